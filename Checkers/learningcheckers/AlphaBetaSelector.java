@@ -0,0 +1,369 @@
+package learningcheckers;
+
+import java.util.List;
+
+/**
+ * Selects moves by an iterative deepening alpha-beta search.
+ * The leaves of the search tree are scored with the evaluate method of a LinearSelector.
+ * The search is deepened one ply after the other until the time or the node budget
+ * per move is used up; then the best move of the deepest completed search is returned.
+ * Optionally, results are kept in a TranspositionTable so that positions that are reached
+ * by different move orders, or again in the next iteration, are not searched twice.
+ * Moves are searched in the order given by a MoveOrderer, whose history and killer tables
+ * are kept for the whole game.
+ */
+public class AlphaBetaSelector extends MoveSelector {
+    
+    // score of won positions, larger than any evaluation so that the search always
+    // prefers a certain win and the fastest one
+    protected static final double WIN_SCORE = 1000000;
+    private static final double INFINITY = Double.MAX_VALUE;
+    private static final int MAX_DEPTH = 64;
+    // the clock is only read every this many nodes
+    private static final int NODES_BETWEEN_TIME_CHECKS = 1024;
+    // scores are given from the point of view of the root player, so the table entries of
+    // both players are kept apart by this key
+    private static final long ROOT_PLAYER_KEY = 0x9E3779B97F4A7C15L;
+    
+    private LinearSelector evaluator;
+    private int maxDepth;
+    private long nanosPerMove;
+    private long nodesPerMove;
+    private TranspositionTable table;
+    private TranspositionTable.Entry tableEntry = new TranspositionTable.Entry();
+    private MoveOrderer orderer;
+    
+    // state of the running search
+    private Board board;
+    private int rootPlayer;
+    private MoveBuffer[] moves;
+    private UndoRecord[] undo;
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+    private volatile boolean stopped;
+    
+    // statistics of the last search
+    private int lastDepth;
+    private long lastNodes;
+    
+    
+    
+    /**
+     * @param evaluator the selector whose evaluate method scores the leaves.
+     * @param millisPerMove wall-clock time per move in milliseconds, 0 for no limit.
+     */
+    public AlphaBetaSelector(LinearSelector evaluator, long millisPerMove) {
+        this(evaluator, MAX_DEPTH, millisPerMove, 0);
+    }
+    
+    
+    
+    /**
+     * @param evaluator the selector whose evaluate method scores the leaves.
+     * @param maxDepth the search stops after this many plies.
+     * @param millisPerMove wall-clock time per move in milliseconds, 0 for no limit.
+     * @param nodesPerMove number of nodes searched per move, 0 for no limit.
+     */
+    public AlphaBetaSelector(LinearSelector evaluator, int maxDepth, long millisPerMove, long nodesPerMove) {
+        this(evaluator, maxDepth, millisPerMove, nodesPerMove, null);
+    }
+    
+    
+    
+    /**
+     * @param evaluator the selector whose evaluate method scores the leaves.
+     * @param maxDepth the search stops after this many plies.
+     * @param millisPerMove wall-clock time per move in milliseconds, 0 for no limit.
+     * @param nodesPerMove number of nodes searched per move, 0 for no limit.
+     * @param table the transposition table to use, may be null.
+     */
+    public AlphaBetaSelector(LinearSelector evaluator, int maxDepth, long millisPerMove, long nodesPerMove, TranspositionTable table) {
+        super();
+        if (maxDepth < 1 || maxDepth > MAX_DEPTH) throw new RuntimeException("Search depth must be between 1 and " + MAX_DEPTH + ": " + maxDepth);
+        this.evaluator = evaluator;
+        this.maxDepth = maxDepth;
+        this.nanosPerMove = millisPerMove * 1000000L;
+        this.nodesPerMove = nodesPerMove;
+        this.table = table;
+        orderer = new MoveOrderer();
+        moves = new MoveBuffer[MAX_DEPTH + 1];
+        undo = new UndoRecord[MAX_DEPTH + 1];
+        for (int i = 0; i <= MAX_DEPTH; i++) {
+            moves[i] = new MoveBuffer();
+            undo[i] = new UndoRecord();
+        }
+    }
+    
+    
+    
+    @Override
+    public void resetBoardMoveMemory() {
+        super.resetBoardMoveMemory();
+        // called by the constructor of MoveSelector before the orderer exists
+        if (orderer != null) orderer.reset();
+    }
+    
+    
+    
+    @Override
+    public Move select(List<Move> legalMoves, Board b, int player) {
+        return selectPacked(legalMoves, b, player);
+    }
+    
+    
+    
+    @Override
+    public int select(MoveBuffer legalMoves, Board b, int player) {
+        MoveBuffer rootMoves = new MoveBuffer(legalMoves.size());
+        for (int i = 0; i < legalMoves.size(); i++) 
+            if (!moveMemoryContains(b, legalMoves.get(i))) rootMoves.add(legalMoves.get(i));
+        if (rootMoves.isEmpty()) return Move.NO_MOVE;
+        stopped = false;
+        if (table != null) table.newSearch();
+        int best = searchMoves(b, rootMoves, player, 1);
+        registerMoveOnBoard(b, best);
+        return best;
+    }
+        
+    
+    
+    /**
+     * Runs the iterative deepening search over the given root moves, starting with firstDepth,
+     * and returns the best move found. The move memory is neither read nor written.
+     * The order of rootMoves may change.
+     */
+    int searchMoves(Board b, MoveBuffer rootMoves, int player, int firstDepth) {
+        board = (Board)b.clone();
+        rootPlayer = player;
+        nodes = 0;
+        aborted = false;
+        deadline = nanosPerMove > 0 ? System.nanoTime() + nanosPerMove : Long.MAX_VALUE;
+        lastDepth = 0;
+        int tableMove = Move.NO_MOVE;
+        if (table != null) {
+            tableMove = TranspositionTable.getMove(table.probe(getTableKey()));
+        }
+        orderer.order(rootMoves, board, 0, tableMove);
+        
+        int best = rootMoves.get(0);
+        for (int depth = Math.min(firstDepth, maxDepth); depth <= maxDepth && !aborted; depth++) {
+            int bestOfIteration = searchRoot(rootMoves, depth);
+            if (aborted) break;
+            best = bestOfIteration;
+            lastDepth = depth;
+            // search the best move first in the next iteration
+            moveToFront(rootMoves, best);
+        }
+        lastNodes = nodes;
+        board = null;
+        return best;
+    }
+    
+    
+    
+    /**
+     * Prepares the selector for a call of searchMoves from another thread.
+     */
+    void resetStop() {
+        stopped = false;
+    }
+    
+    
+    
+    /**
+     * Makes a running searchMoves return as soon as possible.
+     */
+    void stop() {
+        stopped = true;
+    }
+    
+    
+    
+    private void moveToFront(MoveBuffer buffer, int m) {
+        int index = buffer.indexOf(m);
+        if (index <= 0) return;
+        buffer.set(index, buffer.get(0));
+        buffer.set(0, m);
+    }
+    
+    
+    
+    private long getTableKey() {
+        return rootPlayer == Board.getStartPlayer() ? board.getBoardHash() : board.getBoardHash() ^ ROOT_PLAYER_KEY;
+    }
+    
+    
+    
+    private int searchRoot(MoveBuffer rootMoves, int depth) {
+        double alpha = -INFINITY;
+        int best = rootMoves.get(0);
+        for (int i = 0; i < rootMoves.size(); i++) {
+            int m = rootMoves.get(i);
+            board.makeMove(m, undo[0]);
+            double score = search(depth - 1, 1, alpha, INFINITY);
+            board.unmakeMove(undo[0]);
+            if (aborted) break;
+            if (score > alpha) {
+                alpha = score;
+                best = m;
+            }
+        }
+        if (table != null && !aborted) table.store(getTableKey(), depth, TranspositionTable.EXACT, alpha, best);
+        return best;
+    }
+    
+    
+    
+    /**
+     * Minimax search with alpha-beta pruning. Scores are given from the point of view 
+     * of the root player, who maximises while the other player minimises.
+     */
+    private double search(int depth, int ply, double alpha, double beta) {
+        nodes++;
+        if (nodes % NODES_BETWEEN_TIME_CHECKS == 0 && (stopped || System.nanoTime() > deadline)) aborted = true;
+        if (nodesPerMove > 0 && nodes >= nodesPerMove) aborted = true;
+        if (aborted) return 0;
+        
+        if (board.boardHasFinalState()) {
+            return board.getNumberOfPiecesFor(rootPlayer) > 0 ? WIN_SCORE - ply : -WIN_SCORE + ply;
+        }
+        if (depth == 0) return evaluator.evaluate(board, rootPlayer);
+        
+        long key = 0;
+        int tableMove = Move.NO_MOVE;
+        if (table != null) {
+            key = getTableKey();
+            if (table.probe(key, tableEntry)) {
+                long data = tableEntry.getData();
+                tableMove = TranspositionTable.getMove(data);
+                if (TranspositionTable.getDepth(data) >= depth) {
+                    double score = fromTableScore(tableEntry.getScore(), ply);
+                    int bound = TranspositionTable.getBound(data);
+                    if (bound == TranspositionTable.EXACT) return score;
+                    if (bound == TranspositionTable.LOWER_BOUND && score >= beta) return score;
+                    if (bound == TranspositionTable.UPPER_BOUND && score <= alpha) return score;
+                }
+            }
+        }
+        
+        int player = board.getNextPlayer();
+        MoveBuffer buffer = moves[ply];
+        if (board.getAllLegalMoves(player, buffer) == 0) {
+            // the player to move loses unless the other player can not move either
+            if (board.getAllLegalMoves(board.getOtherPlayer(player), buffer) == 0) return 0;
+            return player == rootPlayer ? -WIN_SCORE + ply : WIN_SCORE - ply;
+        }
+        orderer.order(buffer, board, ply, tableMove);
+        
+        double alphaBefore = alpha;
+        double betaBefore = beta;
+        boolean maximise = player == rootPlayer;
+        double best = maximise ? -INFINITY : INFINITY;
+        int bestMove = Move.NO_MOVE;
+        for (int i = 0; i < buffer.size(); i++) {
+            int m = buffer.get(i);
+            board.makeMove(m, undo[ply]);
+            double score = search(depth - 1, ply + 1, alpha, beta);
+            board.unmakeMove(undo[ply]);
+            if (aborted) return 0;
+            if (maximise ? score > best : score < best) {
+                best = score;
+                bestMove = m;
+            }
+            if (maximise) {
+                if (best > alpha) alpha = best;
+            } else {
+                if (best < beta) beta = best;
+            }
+            if (alpha >= beta) {
+                orderer.registerCutoff(m, depth, ply);
+                break;
+            }
+        }
+        if (table != null) {
+            int bound = TranspositionTable.EXACT;
+            if (best <= alphaBefore) bound = TranspositionTable.UPPER_BOUND;
+            else if (best >= betaBefore) bound = TranspositionTable.LOWER_BOUND;
+            table.store(key, depth, bound, toTableScore(best, ply), bestMove);
+        }
+        return best;
+    }
+    
+    
+    
+    // won and lost positions are scored by their distance from the root, 
+    // in the table they are stored by their distance from the position itself
+    private static double toTableScore(double score, int ply) {
+        if (score > WIN_SCORE - MAX_DEPTH - 1) return score + ply;
+        if (score < -WIN_SCORE + MAX_DEPTH + 1) return score - ply;
+        return score;
+    }
+    
+    
+    
+    private static double fromTableScore(double score, int ply) {
+        if (score > WIN_SCORE - MAX_DEPTH - 1) return score - ply;
+        if (score < -WIN_SCORE + MAX_DEPTH + 1) return score + ply;
+        return score;
+    }
+    
+    
+    
+    /**
+     * Returns the depth of the deepest search that was completed for the last move.
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+    
+    
+    
+    /**
+     * Returns the number of nodes searched for the last move.
+     */
+    public long getLastNodes() {
+        return lastNodes;
+    }
+    
+    
+    
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    
+    
+    public long getMillisPerMove() {
+        return nanosPerMove / 1000000L;
+    }
+    
+    
+    
+    public LinearSelector getEvaluator() {
+        return evaluator;
+    }
+    
+    
+    
+    /**
+     * Returns the transposition table of this selector or null.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+    
+    
+    
+    /**
+     * The copy gets its own transposition table of the same size (if this selector has one)
+     * and a copy of the evaluator.
+     */
+    @Override
+    public Object clone() {
+        TranspositionTable copyTable = table == null ? null : new TranspositionTable(table.getMegabytes());
+        return new AlphaBetaSelector((LinearSelector)evaluator.clone(), maxDepth, getMillisPerMove(), nodesPerMove, copyTable);
+    }
+    
+    
+}
@@ -0,0 +1,83 @@
+package learningcheckers;
+
+/**
+ * Computes the values of all rows of a FeatureBatch for a weight vector 
+ * (see LinearSelector.getWeights()). Final states are not detected, 
+ * the value of a row is just the dot product of its features with the weights.
+ * 
+ * The row factors (from FeatureExtractor.NORMAL_PIECES_IN_ROW on) are summed first
+ * and then the others, in the same order as LinearSelector.evaluate does, so every 
+ * evaluator gives exactly the same values as evaluate.
+ * 
+ * This class is the scalar evaluator, create() returns the VectorBatchEvaluator 
+ * instead if the module jdk.incubator.vector is available. VectorBatchEvaluator lives in 
+ * the separate source root vector/, so the rest of the project compiles without the module;
+ * compile that root with --add-modules jdk.incubator.vector and put its classes on the 
+ * class path to use it.
+ */
+public class BatchEvaluator {
+    
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_EVALUATOR = "learningcheckers.VectorBatchEvaluator";
+    
+    private static BatchEvaluator defaultEvaluator;
+    
+    
+    
+    /**
+     * Returns the vector evaluator if it was compiled and the JVM was started with 
+     * --add-modules jdk.incubator.vector, and the scalar evaluator otherwise.
+     */
+    public static BatchEvaluator create() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                return (BatchEvaluator)Class.forName(VECTOR_EVALUATOR).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // the vector source root was not compiled, use the scalar evaluator
+            }
+        }
+        return new BatchEvaluator();
+    }
+    
+    
+    
+    public static synchronized BatchEvaluator getDefault() {
+        if (defaultEvaluator == null) defaultEvaluator = create();
+        return defaultEvaluator;
+    }
+    
+    
+    
+    /**
+     * Writes the value of row r of batch into scores[r].
+     */
+    public void evaluate(FeatureBatch batch, double[] weights, double[] scores) {
+        if (weights.length != batch.getNumberOfFeatures()) 
+            throw new RuntimeException("Expected " + batch.getNumberOfFeatures() + " weights, got " + weights.length);
+        evaluate(batch.getColumns(), weights, 0, batch.size(), scores);
+    }
+    
+    
+    
+    /**
+     * Scalar evaluation of the rows from (inclusive) to to (exclusive).
+     */
+    protected void evaluate(double[][] columns, double[] weights, int from, int to, double[] scores) {
+        for (int r = from; r < to; r++) {
+            double score = 0;
+            for (int f = FeatureExtractor.NORMAL_PIECES_IN_ROW; f < weights.length; f++) 
+                score = score + columns[f][r] * weights[f];
+            for (int f = 0; f < FeatureExtractor.NORMAL_PIECES_IN_ROW; f++) 
+                score = score + columns[f][r] * weights[f];
+            scores[r] = score;
+        }
+    }
+    
+    
+    
+    public String getName() {
+        return "scalar";
+    }
+    
+    
+}
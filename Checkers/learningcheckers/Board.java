@@ -1,18 +1,25 @@
 package learningcheckers;
 
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Point;
-import java.awt.Rectangle;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-
-import simplevisuals.ViewPort;
+import java.util.SplittableRandom;
 
 public class Board {
     
     
     private static final int SIZE = 8;
+    // every player has at most 12 pieces, each of them has at most 13 moves
+    public static final int MAX_NUMBER_OF_MOVES = SIZE/2 * (SIZE/2 - 1) * (2 * SIZE - 3);
+    // layout of the feature vector of a board, see getFeatures.
+    // Every feature is stored for player 1 at the given index and for player 2 right after it;
+    // the normal pieces per row are stored for rows 0 to SIZE-1 of player 1, then of player 2.
+    public static final int FEATURE_PIECES = 0;
+    public static final int FEATURE_KINGS = 2;
+    public static final int FEATURE_THREATENED_PIECES = 4;
+    public static final int FEATURE_STUCK_PIECES = 6;
+    public static final int FEATURE_NORMAL_PIECES_IN_ROW = 8;
+    public static final int NUMBER_OF_FEATURES = FEATURE_NORMAL_PIECES_IN_ROW + 2 * SIZE;
     private static final int PLAYER1 = 1; // do not change this constant!
     private static final int PLAYER2 = 2; // do not change this constant!
     private static final int EMPTY_FIELD = 0; 
@@ -20,69 +27,120 @@ public class Board {
     private static final int PLAYER2_NORMAL_PIECE = PLAYER2;
     private static final int PLAYER1_KING_PIECE = PLAYER1 + 2;
     private static final int PLAYER2_KING_PIECE = PLAYER2 + 2;
-    private static final Color WHITE = Color.WHITE;  
-    private static final Color BLACK = Color.BLACK;  
-    private static final Color TEXTCOLOR = Color.GRAY;  
-    private static final Color PLAYER1_COLOR = Color.CYAN;  
-    private static final Color PLAYER2_COLOR = Color.ORANGE;  
-    private static final Color PLAYER1_KING_COLOR = Color.BLUE;  
-    private static final Color PLAYER2_KING_COLOR = Color.RED;  
-    private static final Color[] cols = {BLACK, WHITE};
-    private static final Color[] playerCols = {PLAYER1_COLOR, PLAYER2_COLOR, PLAYER1_KING_COLOR, PLAYER2_KING_COLOR};
-    private static final boolean SHOW_BOARDINFO = true;
-    private static final int VPSize = 1000;
-    public static final boolean reuseViewPortForDifferentGames = true;
-    private static final ViewPort staticWindow = (reuseViewPortForDifferentGames ? new ViewPort("Dame", VPSize, VPSize, false) : null);
-    // each piece at every position on the board can be mapped to a unique identifier (which is a number) 
-    // by multiplying respective line-/column-/ and pieceUID.
-    // all of the following constants are used to compute a field hash rapidly such that 
-    // it can be updated for every move in a fast way
-    private static final int[] columnUIDs = getPrimes(1, SIZE); 
-    private static final int[] lineUIDs = getPrimes(SIZE + 1, 2 * SIZE);
-    private static final int[] pUID = getPrimes(2 * SIZE + 1, 2* SIZE + 4);
-    private static final int[] pieceUIDs = {0, pUID[0], pUID[1], pUID[2], pUID[3]};
-    private static final long fieldModule = 2147483647L;
-    
+    // Zobrist hashing: every piece at every black field of the board gets a random 64 bit key,
+    // the board hash is the xor of the keys of all pieces on the board (and of sideToMoveKey
+    // if player 2 is to move). Thus every change of a field costs two xor operations.
+    // The keys of EMPTY_FIELD stay 0. The keys are drawn from a fixed seed so that hashes
+    // stay valid across runs.
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+    private static final long[][] pieceKeys = new long[PLAYER2_KING_PIECE + 1][SIZE * SIZE / 2];
+    private static final long[] fieldKeys = new long[SIZE * SIZE];
+    private static final long sideToMoveKey;
+    
+    // Only the black fields of the board are ever used. They are numbered row by row,
+    // square = y * SIZE/2 + x/2, so that every board fits into a 32 bit mask where
+    // bit i stands for square i.
+    // Even rows hold their black fields on even x, odd rows on odd x.
+    private static final int NUMBER_OF_SQUARES = SIZE * SIZE / 2;
+    private static final int SQUARES_PER_ROW = SIZE / 2;
+    private static final int[][] squareOf = new int[SIZE][SIZE];
+    private static final int[] squareX = new int[NUMBER_OF_SQUARES];
+    private static final int[] squareY = new int[NUMBER_OF_SQUARES];
+    private static final int[] rowMasks = new int[SIZE];
+    private static final int EVEN_ROWS;
+    private static final int ODD_ROWS;
+    private static final int LEFT_EDGE;  // black fields with x == 0
+    private static final int RIGHT_EDGE; // black fields with x == SIZE - 1
+    // the four diagonal directions, ordered such that getOppositeDirection(d) == 3 - d
+    private static final int SOUTH_WEST = 0;
+    private static final int NORTH_WEST = 1;
+    private static final int SOUTH_EAST = 2;
+    private static final int NORTH_EAST = 3;
+    private static final int[] directionX = {-1, -1, 1, 1};
+    private static final int[] directionY = {-1, 1, -1, 1};
+    // rays[d][square] holds the squares on the diagonal from square into direction d, nearest first.
+    // The first entry is the neighbour, the second one the target of a jump.
+    private static final int[][][] rays = new int[4][NUMBER_OF_SQUARES][];
+    // the directions normal pieces move into, indexed by player
+    private static final int[][] forwardDirections = {null, {NORTH_EAST, NORTH_WEST}, {SOUTH_EAST, SOUTH_WEST}};
+    // the squares in the order in which moves are generated (by x first, then by y)
+    private static final int[] scanOrder = new int[NUMBER_OF_SQUARES];
+
+    static {
+        int even = 0, odd = 0, left = 0, right = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                squareOf[x][y] = -1;
+                if ((x + y) % 2 != 0) continue;
+                int square = y * SQUARES_PER_ROW + x / 2;
+                squareOf[x][y] = square;
+                squareX[square] = x;
+                squareY[square] = y;
+                rowMasks[y] |= 1 << square;
+                if (y % 2 == 0) even |= 1 << square;
+                else odd |= 1 << square;
+                if (x == 0) left |= 1 << square;
+                if (x == SIZE - 1) right |= 1 << square;
+            }
+        }
+        int k = 0;
+        for (int x = 0; x < SIZE; x++)
+            for (int y = 0; y < SIZE; y++)
+                if (squareOf[x][y] >= 0) scanOrder[k++] = squareOf[x][y];
+        for (int d = 0; d < 4; d++) {
+            for (int square = 0; square < NUMBER_OF_SQUARES; square++) {
+                int length = 0;
+                int[] ray = new int[SIZE - 1];
+                for (int x = squareX[square] + directionX[d], y = squareY[square] + directionY[d]; 
+                        x >= 0 && x < SIZE && y >= 0 && y < SIZE; x += directionX[d], y += directionY[d])
+                    ray[length++] = squareOf[x][y];
+                rays[d][square] = Arrays.copyOf(ray, length);
+            }
+        }
+        EVEN_ROWS = even;
+        ODD_ROWS = odd;
+        LEFT_EDGE = left;
+        RIGHT_EDGE = right;
+        SplittableRandom rand = new SplittableRandom(ZOBRIST_SEED);
+        for (int piece = PLAYER1_NORMAL_PIECE; piece <= PLAYER2_KING_PIECE; piece++)
+            for (int square = 0; square < NUMBER_OF_SQUARES; square++)
+                pieceKeys[piece][square] = rand.nextLong();
+        for (int field = 0; field < SIZE * SIZE; field++)
+            fieldKeys[field] = rand.nextLong();
+        sideToMoveKey = rand.nextLong();
+    }
+
 
     // Fields
-    private int[][] content;
+    // the position is stored as three bitboards: all pieces of player 1, all pieces of player 2
+    // and all kings of both players. Normal pieces (men) are pieces that are not kings.
+    private int player1Pieces;
+    private int player2Pieces;
+    private int kings;
     private int nextPlayer;
     private long boardHash;
-    private int numberOfPlayer1Pieces;
-    private int numberOfPlayer2Pieces;
-    private int numberOfPlayer1Kings;
-    private int numberOfPlayer2Kings;
-    private ViewPort window;
+    // the threatened and stuck pieces of both players are the expensive part of the features 
+    // of a board. They are computed when they are asked for the first time after a change of 
+    // the board and kept until the next change. unmakeMove restores them along with the board.
+    private boolean featuresValid;
+    private int player1Threatened;
+    private int player2Threatened;
+    private int player1Stuck;
+    private int player2Stuck;
     
     
     
     
     
     public Board() {
-        this((reuseViewPortForDifferentGames ? staticWindow : new ViewPort("Dame", VPSize, VPSize, false)));
-    }
-    
-    
-    public Board(ViewPort old) {
-        content = new int[SIZE][SIZE];
         boardHash = 0;
         nextPlayer = getStartPlayer();
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                setContent(i, j, EMPTY_FIELD);
-            }
-        }
         for (int i = 0; i < SIZE/2; i++) {
             for (int j = 0; j < SIZE/2 - 1; j++) {
                 setContent(i*2 + j%2, j, PLAYER1_NORMAL_PIECE);
                 setContent(i*2 + (j + 1)%2, SIZE - j - 1, PLAYER2_NORMAL_PIECE);
             }
         }
-        numberOfPlayer1Pieces = SIZE/2 * (SIZE/2 - 1);
-        numberOfPlayer2Pieces = SIZE/2 * (SIZE/2 - 1);
-        numberOfPlayer1Kings = 0;
-        numberOfPlayer2Kings = 0;        
-        window = old;
     }
     
     
@@ -95,105 +153,148 @@ public class Board {
     
     
     private Board(boolean cloningMarker) {
-        content = new int[SIZE][SIZE];        
-    }
-    
-    
-    
-    public Color getColor(int x, int y) {
-        return getColor((y + x) % 2);
     }
     
     
     
-    public Color getColor(int c) {
-        return cols[c];
+    /**
+     * Creates the board with the given pieces (bitboards as returned by getPiecesMask 
+     * and getKingsMask) where nextPlayer is to move.
+     */
+    public static Board fromMasks(int player1Pieces, int player2Pieces, int kings, int nextPlayer) {
+        if ((player1Pieces & player2Pieces) != 0 || (kings & ~(player1Pieces | player2Pieces)) != 0) 
+            throw new RuntimeException("Inconsistent bitboards " + player1Pieces + ", " + player2Pieces + ", " + kings + ".");
+        Board b = new Board(true);
+        b.nextPlayer = getStartPlayer();
+        for (int square = 0; square < SIZE * SIZE / 2; square++) {
+            int bit = 1 << square;
+            int king = (kings & bit) != 0 ? 2 : 0;
+            if ((player1Pieces & bit) != 0) b.setSquareContent(square, PLAYER1 + king);
+            else if ((player2Pieces & bit) != 0) b.setSquareContent(square, PLAYER2 + king);
+        }
+        b.setNextPlayer(nextPlayer);
+        return b;
     }
     
     
     
     public int getContent(int x, int y) {
-        return content[x][y];
+        int square = squareOf[x][y];
+        if (square < 0) return EMPTY_FIELD;
+        return getSquareContent(square);
+    }
+
+
+
+    private int getSquareContent(int square) {
+        int bit = 1 << square;
+        int king = (kings & bit) != 0 ? 2 : 0;
+        if ((player1Pieces & bit) != 0) return PLAYER1 + king;
+        if ((player2Pieces & bit) != 0) return PLAYER2 + king;
+        return EMPTY_FIELD;
     }
     
     
+    /**
+     * Returns a random 64 bit key for the field (x, y). The keys are independent of the
+     * keys used for the board hash and are meant to identify moves.
+     */
     public static long getPositionHash(int x, int y) {
-        return lineUIDs[y] * columnUIDs[x];
+        return fieldKeys[x * SIZE + y];
     }
     
     public void setContent(int x, int y, int col) {
-        long coordUID = getPositionHash(x, y);
-        int oldCol = content[x][y]; 
-        long oldPieceID = pieceUIDs[oldCol] * coordUID;
-        long pieceID = pieceUIDs[col] * coordUID;
-        boardHash = boardHash - oldPieceID;
-        if (boardHash < 0) boardHash = boardHash + fieldModule;
-        boardHash = boardHash + pieceID;
-        if (boardHash >= fieldModule) boardHash = boardHash - fieldModule;
-        
-        content[x][y] = col;
+        int square = squareOf[x][y];
+        if (square < 0) {
+            if (col == EMPTY_FIELD) return;
+            throw new RuntimeException("Field (" + x + ", " + y + ") is not a black field and can not hold piece " + col + ".");
+        }
+        setSquareContent(square, col);
     }
     
     
-    public long getBoardHash() {
-        return boardHash;
-    }
-    
     
-    public void drawBoard() {
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                drawField(i, j);
-                drawPiece(i, j);                
-            }
-        }        
+    private void setSquareContent(int square, int col) {
+        featuresValid = false;
+        boardHash ^= pieceKeys[getSquareContent(square)][square] ^ pieceKeys[col][square];
+        int bit = 1 << square;
+        player1Pieces &= ~bit;
+        player2Pieces &= ~bit;
+        kings &= ~bit;
+        if (col == EMPTY_FIELD) return;
+        if (getPlayerFor(col) == PLAYER1) player1Pieces |= bit;
+        else player2Pieces |= bit;
+        if (isKing(col)) kings |= bit;
     }
     
     
-    
-    public void show() {        
-        window.copyBackgroundBuffer();
+    /**
+     * Returns the 64 bit Zobrist hash of the board, including the player to move.
+     */
+    public long getBoardHash() {
+        return boardHash;
     }
-    
-    
-    public void closeWindow() {
-        window.close();
+
+
+
+    private void setNextPlayer(int player) {
+        if (player != nextPlayer) boardHash ^= sideToMoveKey;
+        nextPlayer = player;
     }
-    
-    
-    private void drawField(int x, int y) {
-        Rectangle r = getFieldCoords(x, y);
-        window.drawBlock(r, getColor(x, y));
-        if (SHOW_BOARDINFO)
-            window.drawString("(" + x + ", " + y + ")", r.x + getFieldSize()/4, r.y + getFieldSize()*7/8, getFieldSize()/2, getFieldSize()/8, TEXTCOLOR);
+
+
+    /**
+     * Returns the bitboard of all pieces (normal pieces and kings) of the given player.
+     * Bit i is set if square i holds such a piece, see getSquare(int, int).
+     */
+    public int getPiecesMask(int player) {
+        return player == PLAYER1 ? player1Pieces : player2Pieces;
     }
-    
-    
-    
-    private void drawPiece(int x, int y) {
-        int col = content[x][y];
-        if (col != 0) {
-            Rectangle r = getFieldCoords(x, y);
-            window.drawDisk(r.x+getFieldSize()/2, r.y+ getFieldSize()/2, 4*getFieldSize()/11, playerCols[col-1]);
-            if (SHOW_BOARDINFO)
-                window.drawString(""  + getPlayerFor(col) + "", r.x + getFieldSize()*7/16, r.y + getFieldSize()*7/16, getFieldSize()/8, getFieldSize()/8, TEXTCOLOR);
-            
-        }
+
+
+
+    /**
+     * Returns the bitboard of all kings of the given player.
+     */
+    public int getKingsMask(int player) {
+        return getPiecesMask(player) & kings;
     }
 
-    
-    
-    private int getFieldSize() {
-        return VPSize/SIZE;
+
+
+    /**
+     * Returns the bitboard of all normal pieces of the given player.
+     */
+    public int getNormalPiecesMask(int player) {
+        return getPiecesMask(player) & ~kings;
     }
-    
-    
 
-    private Rectangle getFieldCoords(int x, int y) {
-        final int fieldSize = getFieldSize();
-        return new Rectangle(new Point(x*fieldSize, VPSize - (y+1)*fieldSize), new Dimension(fieldSize, fieldSize));
+
+
+    public int getEmptyMask() {
+        return ~(player1Pieces | player2Pieces);
+    }
+
+
+
+    /**
+     * Returns the index of the black field (x, y) within the bitboards or -1 for a white field.
+     */
+    public static int getSquare(int x, int y) {
+        return squareOf[x][y];
+    }
+
+
+
+    public static int getSquareX(int square) {
+        return squareX[square];
+    }
+
+
+
+    public static int getSquareY(int square) {
+        return squareY[square];
     }
-    
     
     
     public int getPlayerNormalColor(int player) {
@@ -223,39 +324,54 @@ public class Board {
 
     
     public int getNumberOfPiecesFor(int player) {
-        if (player == PLAYER1) return numberOfPlayer1Pieces;
-        else return numberOfPlayer2Pieces;
+        return Integer.bitCount(getPiecesMask(player));
     }
     
     
     
     public int getNumberOfKingsFor(int player) {
-        if (player == PLAYER1) return numberOfPlayer1Kings;
-        else return numberOfPlayer2Kings;
+        return Integer.bitCount(getKingsMask(player));
     }
     
     
     
     public int getNumberOfPlayer1Pieces() {
-        return numberOfPlayer1Pieces;
+        return Integer.bitCount(player1Pieces);
     }
 
     
 
     public int getNumberOfPlayer2Pieces() {
-        return numberOfPlayer2Pieces;
+        return Integer.bitCount(player2Pieces);
     }
     
     
     public int getNumberOfNormalPiecesInRow(int row, int player) {
-        int offset = row % 2;
-        int count = 0;
-        int col = getPlayerNormalColor(player);
-        if (content[offset][row] == col) count++; 
-        if (content[offset + 2][row] == col) count++; 
-        if (content[offset + 4][row] == col) count++; 
-        if (content[offset + 6][row] == col) count++;
-        return count;
+        return Integer.bitCount(getNormalPiecesMask(player) & rowMasks[row]);
+    }
+
+
+    
+    /**
+     * Writes the feature vector of the board into features, 
+     * which needs NUMBER_OF_FEATURES entries. See FEATURE_PIECES etc. for the layout.
+     */
+    public void getFeatures(int[] features) {
+        updateFeatures();
+        int men1 = player1Pieces & ~kings;
+        int men2 = player2Pieces & ~kings;
+        features[FEATURE_PIECES] = Integer.bitCount(player1Pieces);
+        features[FEATURE_PIECES + 1] = Integer.bitCount(player2Pieces);
+        features[FEATURE_KINGS] = Integer.bitCount(player1Pieces & kings);
+        features[FEATURE_KINGS + 1] = Integer.bitCount(player2Pieces & kings);
+        features[FEATURE_THREATENED_PIECES] = Integer.bitCount(player1Threatened);
+        features[FEATURE_THREATENED_PIECES + 1] = Integer.bitCount(player2Threatened);
+        features[FEATURE_STUCK_PIECES] = Integer.bitCount(player1Stuck);
+        features[FEATURE_STUCK_PIECES + 1] = Integer.bitCount(player2Stuck);
+        for (int row = 0; row < SIZE; row++) {
+            features[FEATURE_NORMAL_PIECES_IN_ROW + row] = Integer.bitCount(men1 & rowMasks[row]);
+            features[FEATURE_NORMAL_PIECES_IN_ROW + SIZE + row] = Integer.bitCount(men2 & rowMasks[row]);
+        }
     }
 
 
@@ -283,7 +399,7 @@ public class Board {
     
     
     private boolean coordIsBlackField(int x, int y) {
-        return coordWithinBoard(x, y) && getColor(x, y) == BLACK;
+        return coordWithinBoard(x, y) && (x + y) % 2 == 0;
     }
     
     
@@ -295,192 +411,234 @@ public class Board {
     
     
     
+    /**
+     * Moves every square of the given bitboard one step into direction d.
+     * Squares that would leave the board are dropped.
+     */
+    private static int shift(int mask, int d) {
+        switch (d) {
+            case SOUTH_WEST: return ((mask & EVEN_ROWS & ~LEFT_EDGE) >>> 5) | ((mask & ODD_ROWS) >>> 4);
+            case NORTH_WEST: return ((mask & EVEN_ROWS & ~LEFT_EDGE) << 3) | ((mask & ODD_ROWS) << 4);
+            case SOUTH_EAST: return ((mask & EVEN_ROWS) >>> 4) | ((mask & ODD_ROWS & ~RIGHT_EDGE) >>> 3);
+            default:         return ((mask & EVEN_ROWS) << 4) | ((mask & ODD_ROWS & ~RIGHT_EDGE) << 5);
+        }
+    }
+
+
+
+    private static int getOppositeDirection(int d) {
+        return 3 - d;
+    }
+
+
+
+    // normal pieces of player 1 move north, those of player 2 move south
+    private static boolean isForwardDirection(int player, int d) {
+        return (directionY[d] > 0) == (player == PLAYER1);
+    }
+
+
+
     public boolean isThreatened(int player, int x, int y) {
-        //System.out.println("x: " + x + ", y: " + y + ", threat for player " + player + ": " + numberOfEnemiesThreatening(player, x, y));
-        return numberOfEnemiesThreatening(player, x, y) > 0;
+        int square = squareOf[x][y];
+        return square >= 0 && (getThreatenedMask(player) & (1 << square)) != 0;
     }
     
     
     
     public int numberOfEnemiesThreatening(int player, int x, int y) {  
-        int col = content[x][y];
-        if (col == EMPTY_FIELD) return 0;
-        int p = getPlayerFor(col);
-        if (p != player) return 0;
-        return numberOfEnemiesThreateningFromDirection(player, x, y, 1, 1) +
-                numberOfEnemiesThreateningFromDirection(player, x, y, 1, -1) +
-                numberOfEnemiesThreateningFromDirection(player, x, y, -1, 1) +
-                numberOfEnemiesThreateningFromDirection(player, x, y, -1, -1);
+        int square = squareOf[x][y];
+        if (square < 0) return 0;
+        int count = 0;
+        for (int d = 0; d < 4; d++)
+            count += (getThreatenedFromDirection(player, d) >>> square) & 1;
+        return count;
     }
     
     
     
-    private boolean inIntervall(int value, int left, int right) {
-        return value >= left && value <= right;
+    /**
+     * Returns the bitboard of all pieces of player that could be captured by the other player,
+     * i.e. numberOfEnemiesThreatening(player, x, y) > 0 for every square of the mask.
+     */
+    public int getThreatenedMask(int player) {
+        updateFeatures();
+        return player == PLAYER1 ? player1Threatened : player2Threatened;
+    }
+
+
+
+    private void updateFeatures() {
+        if (featuresValid) return;
+        player1Threatened = computeThreatenedMask(PLAYER1);
+        player2Threatened = computeThreatenedMask(PLAYER2);
+        player1Stuck = computeStuckMask(PLAYER1);
+        player2Stuck = computeStuckMask(PLAYER2);
+        featuresValid = true;
+    }
+
+
+
+    private int computeThreatenedMask(int player) {
+        return getThreatenedFromDirection(player, SOUTH_WEST) | getThreatenedFromDirection(player, NORTH_WEST) |
+                getThreatenedFromDirection(player, SOUTH_EAST) | getThreatenedFromDirection(player, NORTH_EAST);
     }
     
     
     
-    private boolean allValuesInIntervall(int left, int right, int ... values) {
-        for (int v : values) if (!inIntervall(v, left, right)) return false;
-        return true;
+    public int getNumberOfThreatenedPieces(int player) {
+        return Integer.bitCount(getThreatenedMask(player));
     }
     
     
     
-    private int numberOfEnemiesThreateningFromDirection(int player, int x, int y, int xDir, int yDir) {
-        if (!allValuesInIntervall(0, SIZE-1, x + xDir, y + yDir)) return 0;
-        int count = 0;
+    // pieces of player that can be captured by an enemy sitting in direction d, jumping
+    // into the opposite direction onto the empty field behind the piece
+    private int getThreatenedFromDirection(int player, int d) {
         int other = getOtherPlayer(player);
-        
-        if (allValuesInIntervall(0, SIZE - 1, x + (-1 * xDir), y + (-1 * yDir))  && 
-                content[x + xDir * -1][y + yDir * -1] == EMPTY_FIELD) {
-            int field = 0;
-            for (int i = xDir, j = yDir;  
-                    allValuesInIntervall(0, SIZE - 1, x + i, y + j);  
-                    i = i + xDir, j = j + yDir) {
-                field = content[x+i][y+j];
-                if (isPieceOf(field, other)) {
-                    if (isKingOf(field, other)) count++;
-                    else {
-                        if (j == 1 && other == PLAYER2) count++;
-                        if (j == -1 && other == PLAYER1) count++;
-                    }
-                }
-                if (field != EMPTY_FIELD) break;
-            }
-        }
-        return count;
+        int empty = getEmptyMask();
+        int occupied = ~empty;
+        int back = getOppositeDirection(d);
+        // fields whose first non-empty field in direction d holds an enemy king
+        int enemyKings = getKingsMask(other);
+        int attacked = 0;
+        for (int front = shift(enemyKings, back); front != 0; front = shift(front & empty, back))
+            attacked |= front & occupied;
+        if (isForwardDirection(other, back))
+            attacked |= shift(getNormalPiecesMask(other), back);
+        return attacked & getPiecesMask(player) & shift(empty, d);
     }
     
     
     public boolean isStuck(int player, int x, int y) {
-        int field = content[x][y];
-        if (field == EMPTY_FIELD || player != getPlayerFor(field)) return false;
-        int other = getOtherPlayer(player);
-        if (isKing(field)) {
-            int[] dirs = {1, -1};
-            for (int j : dirs) {
-                for (int k : dirs) {
-                    boolean enemyInDirFound = false;
-                    for (int xk = x+j, yk = y+k; xk >= 0 && yk >= 0 && xk < SIZE && yk < SIZE; xk = xk + j, yk = yk + k) {
-                        int searchField = content[xk][yk]; 
-                        if (searchField == EMPTY_FIELD) {
-                            return false;
-                        } else if (isPieceOf(searchField, other)) {
-                            if (enemyInDirFound) break;
-                            else enemyInDirFound = true;
-                        } else break;
-                    }
-                }
-            }
-        } else {
-            int dir = 1;
-            if (isPieceOf(field, PLAYER2)) dir = -1;
-            if (x < SIZE - 1 && content[x + 1][y + dir] == EMPTY_FIELD) return false;
-            if (x > 0 && content[x - 1][y + dir] == EMPTY_FIELD) return false;
+        int square = squareOf[x][y];
+        return square >= 0 && (getStuckMask(player) & (1 << square)) != 0;
+    }
             
-            if (y + 2*dir < 0 || y + 2*dir >= SIZE) return true;
             
-            if (x < SIZE - 2 && content[x + 2][y + 2*dir] == EMPTY_FIELD) {
-                if (isPieceOf(content[x + 1][y + dir], other)) return false; 
-            }
             
-            if (x > 2 && content[x - 2][y + 2*dir] == EMPTY_FIELD) {
-                if (isPieceOf(content[x - 1][y + dir], other)) return false; 
-            }
+    /**
+     * Returns the bitboard of all pieces of player that have no legal move.
+     */
+    public int getStuckMask(int player) {
+        updateFeatures();
+        return player == PLAYER1 ? player1Stuck : player2Stuck;
+    }
+
+
+
+    private int computeStuckMask(int player) {
+        int own = getPiecesMask(player);
+        int enemies = getPiecesMask(getOtherPlayer(player));
+        int ownKings = own & kings;
+        int empty = getEmptyMask();
+        int movable = 0;
+        for (int d = 0; d < 4; d++) {
+            int back = getOppositeDirection(d);
+            int emptyBehind = shift(empty, back);
+            int movers = isForwardDirection(player, d) ? own : ownKings;
+            movable |= movers & (emptyBehind | shift(emptyBehind & enemies, back));
         }
-        return true;
+        return own & ~movable;
     }
-    
-    
-    public ViewPort getViewPort() {
-        return window;
+
+
+
+    public int getNumberOfStuckPieces(int player) {
+        return Integer.bitCount(getStuckMask(player));
     }
     
     
-    
     public boolean isLegalMoveFor(Move m, int player) {
         // move stays on the black fields of the board
         if (!coordIsBlackField(m.getFromX(), m.getFromY())) return false;
         if (!coordIsBlackField(m.getToX(), m.getToY())) return false;
-        // target field of move is empty
-        if (getContent(m.getToX(), m.getToY()) != EMPTY_FIELD) return false;
-        // source field contains a piece of the right player
-        if (!isPieceOf(getContent(m.getFromX(), m.getFromY()), player)) return false;
-        
-        int distX = m.getToX() - m.getFromX();
-        int distY = m.getToY() - m.getFromY();
-        // move is on a diagonal
-        if (distX * distX != distY * distY) return false;
-        
-        if (getContent(m.getFromX(), m.getFromY()) == getPlayerNormalColor(player)) { // normal piece
-            if (distX * distX == 1) {
-                if (player == PLAYER1 && distY > 0) return true;
-                if (player == PLAYER2 && distY < 0) return true;
+        MoveBuffer buffer = new MoveBuffer();
+        getAllLegalMovesForPosition(m.getFromX(), m.getFromY(), player, buffer);
+        int to = squareOf[m.getToX()][m.getToY()];
+        for (int i = 0; i < buffer.size(); i++)
+            if (Move.getTo(buffer.get(i)) == to) return true;
+        return false;
+    }
+    
+    
+    
+    /**
+     * Appends all legal moves of the piece at (x, y) to buffer as packed moves.
+     */
+    public void getAllLegalMovesForPosition(int x, int y, int player, MoveBuffer buffer) {
+        int square = squareOf[x][y];
+        if (square >= 0 && (getPiecesMask(player) & (1 << square)) != 0) addMovesOfSquare(square, player, buffer);
+    }
+    
+    
+    
+    // Only legal moves are generated, using the precomputed rays:
+    // normal pieces step forward onto an empty field or jump forward over an enemy piece,
+    // kings move along a diagonal over empty fields and may pass over at most one enemy piece,
+    // which is captured then.
+    private void addMovesOfSquare(int square, int player, MoveBuffer buffer) {
+        int empty = getEmptyMask();
+        int enemies = getPiecesMask(getOtherPlayer(player));
+        if ((kings & (1 << square)) == 0) {
+            int promotionRow = rowMasks[getOppositeSideNumberFor(player)];
+            for (int d : forwardDirections[player]) {
+                int[] ray = rays[d][square];
+                if (ray.length > 0 && (empty & (1 << ray[0])) != 0) 
+                    buffer.add(Move.pack(square, ray[0], -1, (promotionRow & (1 << ray[0])) != 0));
             }
-            if (distX * distX == 4) {
-                int middleContent = getContent(m.getFromX() + distX/2, m.getFromY() + distY/2);
-                if (player == PLAYER1 && distY > 0 && isPieceOf(middleContent, PLAYER2)) return true;
-                if (player == PLAYER2 && distY < 0 && isPieceOf(middleContent, PLAYER1)) return true;
+            for (int d : forwardDirections[player]) {
+                int[] ray = rays[d][square];
+                if (ray.length > 1 && (enemies & (1 << ray[0])) != 0 && (empty & (1 << ray[1])) != 0) 
+                    buffer.add(Move.pack(square, ray[1], ray[0], (promotionRow & (1 << ray[1])) != 0));
             }
-            
-        } else if (getContent(m.getFromX(), m.getFromY()) == getPlayerKingColor(player)) { // king piece
-            int count = 0;
-            int xDirection = 1;
-            int yDirection = 1;
-            if (m.getFromX() > m.getToX()) xDirection = -1;
-            if (m.getFromY() > m.getToY()) yDirection = -1;
-            for (int i = m.getFromX() + xDirection, j = m.getFromY()+ yDirection; i != m.getToX(); i = i + xDirection, j = j + yDirection) {
-                if (isPieceOf(getContent(i, j), player)) return false;
-                if (isPieceOf(getContent(i, j), getOtherPlayer(player))) count++;
+        } else {
+            for (int d = 0; d < 4; d++) {
+                int captured = -1;
+                for (int target : rays[d][square]) {
+                    if ((empty & (1 << target)) != 0) buffer.add(Move.pack(square, target, captured, false));
+                    else if (captured < 0 && (enemies & (1 << target)) != 0) captured = target;
+                    else break;
+                }
             }
-            return count <= 1;
-        } 
-        return false;
+        }
     }
     
     
     
-    private void addToListIfLegal(int fromX, int fromY, int toX, int toY, int player, List<Move> li) {
-        Move m = new Move(fromX,fromY, toX, toY);
-        if (isLegalMoveFor(m, player)) li.add(m);        
+    /**
+     * Writes all legal moves of player into buffer as packed moves (see Move.pack)
+     * and returns their number. The buffer is cleared first.
+     */
+    public int getAllLegalMoves(int player, MoveBuffer buffer) {
+        buffer.clear();
+        int own = getPiecesMask(player);
+        for (int square : scanOrder) 
+            if ((own & (1 << square)) != 0) addMovesOfSquare(square, player, buffer);
+        return buffer.size();
     }
     
     
     
     public List<Move> getAllLegalMovesForPosition(int x, int y, int player) {
-        LinkedList<Move> li = new LinkedList<Move>();
-        int cont = getContent(x, y);
-        if (isPieceOf(cont, player)) {
-            if (cont == getPlayerNormalColor(player)) {
-                int yDir = 1;
-                if (player == PLAYER2) yDir = -1;
-                for (int i = 1; i <= 2; i++) { 
-                    addToListIfLegal(x, y, x+i, y+yDir*i,  player, li);
-                    addToListIfLegal(x, y, x+i, y-yDir*i,  player, li);
-                    addToListIfLegal(x, y, x-i, y+yDir*i,  player, li);
-                    addToListIfLegal(x, y, x-i, y-yDir*i,  player, li);
-                }
-            } else {
-                for (int i = x-1, j = y-1; i>=0 && j >= 0; i--, j--) addToListIfLegal(x, y, i, j, player, li);
-                for (int i = x-1, j = y+1; i>=0 && j < SIZE; i--, j++) addToListIfLegal(x, y, i, j, player, li);
-                for (int i = x+1, j = y-1; i < SIZE && j >= 0; i++, j--) addToListIfLegal(x, y, i, j, player, li);
-                for (int i = x+1, j = y+1; i < SIZE && j < SIZE; i++, j++) addToListIfLegal(x, y, i, j, player, li);
-            }
-        }
-        return li;
+        MoveBuffer buffer = new MoveBuffer();
+        getAllLegalMovesForPosition(x, y, player, buffer);
+        return unpack(buffer);
     }
     
     
     
     public List<Move> getAllLegalMoves(int player) {
-        LinkedList<Move> li = new LinkedList<Move>();
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                li.addAll(getAllLegalMovesForPosition(x, y, player));
-            }            
-        }
+        MoveBuffer buffer = new MoveBuffer();
+        getAllLegalMoves(player, buffer);
+        return unpack(buffer);
+    }
+    
+    
+    
+    private static List<Move> unpack(MoveBuffer buffer) {
+        List<Move> li = new ArrayList<Move>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) li.add(Move.unpack(buffer.get(i)));
         return li;
     }
     
@@ -505,37 +663,119 @@ public class Board {
      * The input-board remains unchanged.
      */
     public Board apply(Move m) {
+        return apply(packMove(m));
+    }
+
+
+
+    /**
+     * Same as apply(Move) for a packed move.
+     */
+    public Board apply(int packedMove) {
         Board b = (Board)clone();
-        int piece = getContent(m.getFromX(), m.getFromY());        
-        int player = getPlayerFor(piece);
-        if (player != nextPlayer) throw new RuntimeException("Move " + m + " is not applicable to board \n" + this + "since it's the turn of player " + nextPlayer + ".");
-        b.setContent(m.getFromX(), m.getFromY(), EMPTY_FIELD);
-        if (m.getToY() == getOppositeSideNumberFor(player) && !isKingOf(piece, player)) {
-            piece = getPlayerKingColor(player);
-            if (player == PLAYER1) b.numberOfPlayer1Kings++;
-            else b.numberOfPlayer2Kings++;
-        }
-        b.setContent(m.getToX(), m.getToY(), piece);
+        b.makeMove(packedMove, null);
+        return b;
+    }
+
+
+
+    /**
+     * Packs the given move for this board, i.e. determines the captured piece and
+     * whether the move leads to a promotion. Expects a legal move.
+     */
+    public int packMove(Move m) {
+        return packMove(m.getFromX(), m.getFromY(), m.getToX(), m.getToY());
+    }
+
+
+
+    private int packMove(int fromX, int fromY, int toX, int toY) {
+        int piece = getContent(fromX, fromY);
+        int captured = -1;
         int xDirection = 1;
         int yDirection = 1;
-        if (m.getFromX() > m.getToX()) xDirection = -1;
-        if (m.getFromY() > m.getToY()) yDirection = -1;
-        for (int i = m.getFromX() + xDirection, j = m.getFromY()+ yDirection; i != m.getToX(); i = i + xDirection, j = j + yDirection) {
-            int pieceBetween = content[i][j];  
-            if (isPieceOf(pieceBetween ,getOtherPlayer(player))) {                
-                if (player == PLAYER1) {
-                    b.numberOfPlayer2Pieces--;
-                    if (isKingOf(pieceBetween, getOtherPlayer(player))) b.numberOfPlayer2Kings--;
-                } else {
-                    b.numberOfPlayer1Pieces--;
-                    if (isKingOf(pieceBetween, player)) b.numberOfPlayer1Kings--;
+        if (fromX > toX) xDirection = -1;
+        if (fromY > toY) yDirection = -1;
+        if (piece != EMPTY_FIELD) {
+            int other = getOtherPlayer(getPlayerFor(piece));
+            for (int i = fromX + xDirection, j = fromY + yDirection; i != toX; i = i + xDirection, j = j + yDirection) {
+                if (isPieceOf(getContent(i, j), other)) {
+                    captured = squareOf[i][j];
+                    break;
                 }
-                b.setContent(i, j, EMPTY_FIELD);
-                break;
             }
         }
-        b.nextPlayer = getOtherPlayer(player);
-        return b;
+        boolean promotion = !isKing(piece) && piece != EMPTY_FIELD && toY == getOppositeSideNumberFor(getPlayerFor(piece));
+        return Move.pack(squareOf[fromX][fromY], squareOf[toX][toY], captured, promotion);
+    }
+
+
+
+    /**
+     * Applies the given move to this board. Expects a legal move.
+     * Returns the record needed to take the move back with unmakeMove.
+     */
+    public UndoRecord makeMove(Move m) {
+        UndoRecord undo = new UndoRecord();
+        makeMove(m, undo);
+        return undo;
+    }
+
+
+
+    /**
+     * Applies the given move to this board and stores everything needed to take it back
+     * in undo, which may be reused for many moves. undo may be null if the move is never
+     * taken back.
+     */
+    public void makeMove(Move m, UndoRecord undo) {
+        makeMove(packMove(m), undo);
+    }
+
+
+
+    /**
+     * Same as makeMove(Move, UndoRecord) for a packed move.
+     */
+    public void makeMove(int packedMove, UndoRecord undo) {
+        int from = Move.getFrom(packedMove);
+        int piece = getSquareContent(from);
+        int player = getPlayerFor(piece);
+        if (player != nextPlayer) throw new RuntimeException("Move " + Move.toString(packedMove) + " is not applicable to board \n" + this + "since it's the turn of player " + nextPlayer + ".");
+        if (undo != null) {
+            undo.save(player1Pieces, player2Pieces, kings, boardHash, nextPlayer);
+            undo.saveFeatures(featuresValid, player1Threatened, player2Threatened, player1Stuck, player2Stuck);
+        }
+        setSquareContent(from, EMPTY_FIELD);
+        if (Move.isPromotion(packedMove)) piece = getPlayerKingColor(player);
+        setSquareContent(Move.getTo(packedMove), piece);
+        int capturedPiece = EMPTY_FIELD;
+        if (Move.isCapture(packedMove)) {
+            int captured = Move.getCaptured(packedMove);
+            capturedPiece = getSquareContent(captured);
+            setSquareContent(captured, EMPTY_FIELD);
+        }
+        setNextPlayer(getOtherPlayer(player));
+        if (undo != null) undo.setMoveInfo(packedMove, capturedPiece);
+    }
+
+
+
+    /**
+     * Takes back the move that was applied with makeMove. Moves have to be taken back
+     * in reverse order.
+     */
+    public void unmakeMove(UndoRecord undo) {
+        player1Pieces = undo.getPlayer1Pieces();
+        player2Pieces = undo.getPlayer2Pieces();
+        kings = undo.getKings();
+        boardHash = undo.getBoardHash();
+        nextPlayer = undo.getNextPlayer();
+        featuresValid = undo.getFeaturesValid();
+        player1Threatened = undo.getPlayer1Threatened();
+        player2Threatened = undo.getPlayer2Threatened();
+        player1Stuck = undo.getPlayer1Stuck();
+        player2Stuck = undo.getPlayer2Stuck();
     }
     
     
@@ -546,66 +786,28 @@ public class Board {
     
     
     public boolean boardHasFinalState() {
-        return numberOfPlayer1Pieces == 0 || numberOfPlayer2Pieces == 0;
+        return player1Pieces == 0 || player2Pieces == 0;
     }
     
     
     
     public Object clone() {
         Board b = new Board(true);
-        for (int x = 0; x < SIZE; x++) {
-            System.arraycopy(content[x], 0, b.content[x], 0, content[x].length);
-        }        
+        b.player1Pieces = player1Pieces;
+        b.player2Pieces = player2Pieces;
+        b.kings = kings;
         b.boardHash = boardHash;
-        b.numberOfPlayer1Pieces = numberOfPlayer1Pieces;
-        b.numberOfPlayer2Pieces = numberOfPlayer2Pieces;
-        b.numberOfPlayer1Kings = numberOfPlayer1Kings;
-        b.numberOfPlayer2Kings = numberOfPlayer2Kings;
+        b.featuresValid = featuresValid;
+        b.player1Threatened = player1Threatened;
+        b.player2Threatened = player2Threatened;
+        b.player1Stuck = player1Stuck;
+        b.player2Stuck = player2Stuck;
         b.nextPlayer = nextPlayer;
-        b.window = window; 
         return b;
     }
     
     
     
-    /**
-     *  returns all primes between from and to, where 2 is the first prime, 3 is the second etc.
-     *  example: getPrimes(3, 6) returns {5, 7, 11, 13}
-     */
-    private static int[] getPrimes(int from, int to) {
-        LinkedList<Integer> li = new LinkedList<>();
-        li.add(2);
-        int[] a = new int[to - from + 1];
-        int i = 0;
-        int x = 3;
-        int count = 1;
-        if (from == 1) {
-            a[0] = 2;
-            i = 1;
-        }
-        while (count < to) {
-            boolean foundDivisor = false;
-            for (int j : li) {
-                if (x % j == 0) {
-                    foundDivisor = true;
-                    break;
-                }
-                if (j*j >= x) break;
-            }
-            if (!foundDivisor) {
-               li.add(x);
-               count++;
-               if (count >= from) {
-                   a[i] = x;
-                   i++;
-               }
-            }
-            x = x + 2;
-        }
-        return a;
-    }
-    
-    
     private String repeat(int times, String s) {
         String t = "";
         for (int i = 0; i < times; i++) t = t + s;
@@ -618,7 +820,7 @@ public class Board {
         for (int y =0; y < SIZE; y++) {
             s = s + (SIZE - y - 1) + "| ";
             for (int x = 0; x < SIZE; x++) {
-                int field = content[x][SIZE - y - 1];
+                int field = getContent(x, SIZE - y - 1);
                 if (field != EMPTY_FIELD) {
                     if (isKingOf(field, PLAYER1) || isKingOf(field, PLAYER2))
                         s = s + "K";
@@ -647,8 +849,7 @@ public class Board {
         b.setContent(6, 6, PLAYER2_KING_PIECE);
         b.setContent(2, 6, PLAYER2_KING_PIECE);
         b.setContent(6, 2, PLAYER2_KING_PIECE);        
-        b.drawBoard();
-        b.show();
+        new BoardRenderer().show(b);
         System.out.println(b.isStuck(PLAYER1, 0, 0));
         
     }
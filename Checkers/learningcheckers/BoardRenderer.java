@@ -0,0 +1,152 @@
+package learningcheckers;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import simplevisuals.ViewPort;
+
+/**
+ * Draws boards into a ViewPort. Board itself knows nothing about drawing, 
+ * so a renderer (and with it AWT) is only needed if the boards are to be shown.
+ */
+public class BoardRenderer {
+    
+    private static final Color WHITE = Color.WHITE;  
+    private static final Color BLACK = Color.BLACK;  
+    private static final Color TEXTCOLOR = Color.GRAY;  
+    private static final Color PLAYER1_COLOR = Color.CYAN;  
+    private static final Color PLAYER2_COLOR = Color.ORANGE;  
+    private static final Color PLAYER1_KING_COLOR = Color.BLUE;  
+    private static final Color PLAYER2_KING_COLOR = Color.RED;  
+    private static final Color[] cols = {BLACK, WHITE};
+    private static final Color[] playerCols = {PLAYER1_COLOR, PLAYER2_COLOR, PLAYER1_KING_COLOR, PLAYER2_KING_COLOR};
+    private static final boolean SHOW_BOARDINFO = true;
+    private static final int VPSize = 1000;
+    public static final boolean reuseViewPortForDifferentGames = true;
+    private static ViewPort staticWindow;
+    
+    private ViewPort window;
+    
+    
+    
+    /**
+     * Creates a renderer with a new window or, if reuseViewPortForDifferentGames is set, 
+     * with the window shared by all renderers (which is created on first use).
+     */
+    public BoardRenderer() {
+        this(reuseViewPortForDifferentGames ? getStaticWindow() : new ViewPort("Dame", VPSize, VPSize, false));
+    }
+    
+    
+    
+    public BoardRenderer(ViewPort window) {
+        this.window = window;
+    }
+    
+    
+    
+    private static synchronized ViewPort getStaticWindow() {
+        if (staticWindow == null) staticWindow = new ViewPort("Dame", VPSize, VPSize, false);
+        return staticWindow;
+    }
+    
+    
+    
+    public Color getColor(int x, int y) {
+        return getColor((y + x) % 2);
+    }
+    
+    
+    
+    public Color getColor(int c) {
+        return cols[c];
+    }
+    
+    
+    
+    public void drawBoard(Board b) {
+        for (int i = 0; i < Board.getSize(); i++) {
+            for (int j = 0; j < Board.getSize(); j++) {
+                drawField(i, j);
+                drawPiece(b, i, j);                
+            }
+        }        
+    }
+    
+    
+    
+    public void show() {        
+        window.copyBackgroundBuffer();
+    }
+    
+    
+    
+    /**
+     * Draws and shows the board.
+     */
+    public void show(Board b) {
+        drawBoard(b);
+        show();
+    }
+    
+    
+    
+    public void closeWindow() {
+        window.close();
+    }
+    
+    
+    
+    /**
+     * Blocks until a key is typed into the window.
+     */
+    public void waitForKeyStroke() {
+        while (!window.hasNextTypedChar())  /* do nothing */;
+        window.getNextTypedChar();
+    }
+    
+    
+    
+    public ViewPort getViewPort() {
+        return window;
+    }
+    
+    
+    
+    private void drawField(int x, int y) {
+        Rectangle r = getFieldCoords(x, y);
+        window.drawBlock(r, getColor(x, y));
+        if (SHOW_BOARDINFO)
+            window.drawString("(" + x + ", " + y + ")", r.x + getFieldSize()/4, r.y + getFieldSize()*7/8, getFieldSize()/2, getFieldSize()/8, TEXTCOLOR);
+    }
+    
+    
+    
+    private void drawPiece(Board b, int x, int y) {
+        int col = b.getContent(x, y);
+        if (col != 0) {
+            Rectangle r = getFieldCoords(x, y);
+            window.drawDisk(r.x+getFieldSize()/2, r.y+ getFieldSize()/2, 4*getFieldSize()/11, playerCols[col-1]);
+            if (SHOW_BOARDINFO)
+                window.drawString(""  + b.getPlayerFor(col) + "", r.x + getFieldSize()*7/16, r.y + getFieldSize()*7/16, getFieldSize()/8, getFieldSize()/8, TEXTCOLOR);
+            
+        }
+    }
+
+    
+    
+    private int getFieldSize() {
+        return VPSize/Board.getSize();
+    }
+    
+    
+
+    private Rectangle getFieldCoords(int x, int y) {
+        final int fieldSize = getFieldSize();
+        return new Rectangle(new Point(x*fieldSize, VPSize - (y+1)*fieldSize), new Dimension(fieldSize, fieldSize));
+    }
+    
+    
+}
@@ -0,0 +1,124 @@
+package learningcheckers;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Plays the moves of an opening book as long as the board is in the book 
+ * and leaves the other boards to another selector.
+ * Of the book moves that are legal and not yet in the move memory, one is chosen at random, 
+ * each with a probability proportional to the number of games it was played in.
+ * Book moves that scored less than minScore (points per game, 2 for a win) are not played.
+ */
+public class BookMoveSelector extends MoveSelector {
+    
+    private OpeningBook book;
+    private MoveSelector selector;
+    private double minScore;
+    private SplittableRandom random = new SplittableRandom();
+    private int bookMoves;
+    
+    
+    
+    public BookMoveSelector(OpeningBook book, MoveSelector selector) {
+        this(book, selector, 0);
+    }
+    
+    
+    
+    public BookMoveSelector(OpeningBook book, MoveSelector selector, double minScore) {
+        super();
+        this.book = book;
+        this.selector = selector;
+        this.minScore = minScore;
+    }
+    
+    
+    
+    @Override
+    public Move select(List<Move> legalMoves, Board b, int player) {
+        return selectPacked(legalMoves, b, player);
+    }
+    
+    
+    
+    @Override
+    public int select(MoveBuffer legalMoves, Board b, int player) {
+        int first = b.getNextPlayer() == player ? book.find(b.getBoardHash()) : -1;
+        if (first >= 0) {
+            int best = Move.NO_MOVE;
+            long total = 0;
+            for (int entry = first; entry < book.getNumberOfEntries() && book.getBoardHash(entry) == b.getBoardHash(); entry++) {
+                int m = book.getMove(entry);
+                int games = book.getGames(entry);
+                if (book.getPoints(entry) < minScore * games) continue;
+                // the book may contain moves of another board with the same hash
+                if (legalMoves.indexOf(m) < 0 || moveMemoryContains(b, m)) continue;
+                total += games;
+                if (random.nextLong(total) < games) best = m;
+            }
+            if (best != Move.NO_MOVE) {
+                bookMoves++;
+                registerMoveOnBoard(b, best);
+                selector.registerMoveOnBoard(b, best);
+                return best;
+            }
+        }
+        int m = selector.select(legalMoves, b, player);
+        if (m != Move.NO_MOVE) registerMoveOnBoard(b, m);
+        return m;
+    }
+    
+    
+    
+    /**
+     * Returns the number of moves taken from the book since the selector was created.
+     */
+    public int getNumberOfBookMoves() {
+        return bookMoves;
+    }
+    
+    
+    
+    public MoveSelector getSelector() {
+        return selector;
+    }
+    
+    
+    
+    @Override
+    public void resetBoardMoveMemory() {
+        super.resetBoardMoveMemory();
+        // called by the constructor of MoveSelector before the selector is set
+        if (selector != null) selector.resetBoardMoveMemory();
+    }
+    
+    
+    
+    @Override
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+        selector.setSeed(random.nextLong());
+    }
+    
+    
+    
+    @Override
+    public Object clone() {
+        BookMoveSelector copy = new BookMoveSelector(book.duplicate(), (MoveSelector)selector.clone(), minScore);
+        copy.random = random.split();
+        return copy;
+    }
+    
+    
+    
+    /**
+     * Closes the selector that plays the other boards.
+     */
+    @Override
+    public void close() {
+        selector.close();
+    }
+    
+    
+}
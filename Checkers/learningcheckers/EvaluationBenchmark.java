@@ -0,0 +1,90 @@
+package learningcheckers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Compares LinearSelector.evaluate, called board by board, with the scalar and the 
+ * default BatchEvaluator on positions from random games.
+ * Arguments: number of positions (default 200000) and number of rounds (default 10).
+ * Start with --add-modules jdk.incubator.vector and the classes of the vector source root
+ * on the class path to include the vector evaluator.
+ */
+public class EvaluationBenchmark {
+    
+    
+    
+    public static void main(String[] args) {
+        int numberOfPositions = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        
+        SplittableRandom rand = new SplittableRandom(42);
+        LinearSelector selector = new HumanIntuitionLinearSelector();
+        List<Board> boards = new ArrayList<>(numberOfPositions);
+        int[] players = new int[numberOfPositions];
+        FeatureBatch batch = new FeatureBatch(Board.getSize(), numberOfPositions);
+        MoveBuffer moves = new MoveBuffer();
+        Board b = new Board();
+        while (boards.size() < numberOfPositions) {
+            if (b.boardHasFinalState() || b.getAllLegalMoves(b.getNextPlayer(), moves) == 0) {
+                b = new Board();
+                continue;
+            }
+            b = b.apply(moves.get(rand.nextInt(moves.size())));
+            if (b.boardHasFinalState()) continue;
+            // evaluate the position for the player that has just moved, as select does
+            players[boards.size()] = b.getOtherPlayer(b.getNextPlayer());
+            batch.add(b, players[boards.size()]);
+            boards.add(b);
+        }
+        
+        double[] expected = new double[numberOfPositions];
+        double[] scores = new double[numberOfPositions];
+        BatchEvaluator scalar = new BatchEvaluator();
+        BatchEvaluator preferred = BatchEvaluator.getDefault();
+        double checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < numberOfPositions; i++) expected[i] = selector.evaluate(boards.get(i), players[i]);
+            long evaluateTime = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            scalar.evaluate(batch, selector.getWeights(), scores);
+            long scalarTime = System.nanoTime() - start;
+            checksum += check(expected, scores);
+            
+            start = System.nanoTime();
+            preferred.evaluate(batch, selector.getWeights(), scores);
+            long preferredTime = System.nanoTime() - start;
+            checksum += check(expected, scores);
+            
+            System.out.println("round " + round + 
+                    ": evaluate " + nanosPerPosition(evaluateTime, numberOfPositions) + 
+                    " ns, scalar batch " + nanosPerPosition(scalarTime, numberOfPositions) + 
+                    " ns, " + preferred.getName() + " batch " + nanosPerPosition(preferredTime, numberOfPositions) + 
+                    " ns per position");
+        }
+        System.out.println("checksum " + checksum);
+    }
+    
+    
+    
+    private static double check(double[] expected, double[] scores) {
+        double sum = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != scores[i]) 
+                throw new RuntimeException("Position " + i + ": batch value " + scores[i] + " differs from " + expected[i]);
+            sum += scores[i];
+        }
+        return sum;
+    }
+    
+    
+    
+    private static String nanosPerPosition(long nanos, int numberOfPositions) {
+        return String.format("%.2f", (double)nanos / numberOfPositions);
+    }
+    
+    
+}
@@ -0,0 +1,93 @@
+package learningcheckers;
+
+/**
+ * A batch of feature rows (see FeatureExtractor) stored column by column:
+ * getColumns()[f][r] is feature f of row r. Stored this way, the same feature of
+ * consecutive rows lies side by side, which is what a BatchEvaluator works on.
+ * Not thread-safe.
+ */
+public class FeatureBatch {
+    
+    private FeatureExtractor extractor;
+    private double[][] columns;
+    private double[] row;
+    private int size;
+    
+    
+    
+    public FeatureBatch(int boardSize, int capacity) {
+        extractor = new FeatureExtractor(boardSize);
+        columns = new double[extractor.getNumberOfFeatures()][Math.max(capacity, 8)];
+        row = new double[extractor.getNumberOfFeatures()];
+        size = 0;
+    }
+    
+    
+    
+    public void clear() {
+        size = 0;
+    }
+    
+    
+    
+    /**
+     * Adds the features of board b from the point of view of player as a new row
+     * and returns the index of that row.
+     */
+    public int add(Board b, int player) {
+        extractor.extract(b, player, row, 0);
+        return add(row, 0);
+    }
+    
+    
+    
+    /**
+     * Adds the row at index rowIndex of the row-major matrix features as a new row
+     * and returns the index of that row.
+     */
+    public int add(double[] features, int rowIndex) {
+        if (size == columns[0].length) grow();
+        int offset = rowIndex * columns.length;
+        for (int f = 0; f < columns.length; f++) columns[f][size] = features[offset + f];
+        return size++;
+    }
+    
+    
+    
+    private void grow() {
+        for (int f = 0; f < columns.length; f++) {
+            double[] larger = new double[2 * columns[f].length];
+            System.arraycopy(columns[f], 0, larger, 0, size);
+            columns[f] = larger;
+        }
+    }
+    
+    
+    
+    public double get(int rowIndex, int feature) {
+        return columns[feature][rowIndex];
+    }
+    
+    
+    
+    public int size() {
+        return size;
+    }
+    
+    
+    
+    public int getNumberOfFeatures() {
+        return columns.length;
+    }
+    
+    
+    
+    /**
+     * The columns are not copied, only the first size() entries of each are used.
+     */
+    public double[][] getColumns() {
+        return columns;
+    }
+    
+    
+}
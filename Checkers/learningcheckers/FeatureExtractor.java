@@ -0,0 +1,80 @@
+package learningcheckers;
+
+/**
+ * Writes the features a LinearSelector uses into rows of a flat double matrix,
+ * one row of getNumberOfFeatures() entries per board. The features are given from the
+ * point of view of a player: "self" are the pieces of the player, "other" those of the enemy.
+ * Feature i of a row belongs to the weight i of LinearSelector.getWeights().
+ */
+public class FeatureExtractor {
+    
+    // layout of a feature row
+    public static final int BASIS = 0;
+    public static final int PIECES_SELF = 1;
+    public static final int PIECES_OTHER = 2;
+    public static final int KINGS_SELF = 3;
+    public static final int KINGS_OTHER = 4;
+    public static final int THREATENED_PIECES_SELF = 5;
+    public static final int THREATENED_PIECES_OTHER = 6;
+    public static final int STUCK_PIECES_SELF = 7;
+    public static final int STUCK_PIECES_OTHER = 8;
+    // followed by the number of own normal pieces per row, for the rows 0 to boardSize - 2
+    // counted from the own side of the board
+    public static final int NORMAL_PIECES_IN_ROW = 9;
+    
+    private int numberOfFeatures;
+    private int[] boardFeatures = new int[Board.NUMBER_OF_FEATURES];
+    
+    
+    
+    public FeatureExtractor() {
+        this(Board.getSize());
+    }
+    
+    
+    
+    public FeatureExtractor(int boardSize) {
+        numberOfFeatures = getNumberOfFeatures(boardSize);
+    }
+    
+    
+    
+    public static int getNumberOfFeatures(int boardSize) {
+        return NORMAL_PIECES_IN_ROW + boardSize - 1;
+    }
+    
+    
+    
+    public int getNumberOfFeatures() {
+        return numberOfFeatures;
+    }
+    
+    
+    
+    /**
+     * Writes the features of board b from the point of view of player into 
+     * row of the matrix features.
+     */
+    public void extract(Board b, int player, double[] features, int row) {
+        b.getFeatures(boardFeatures);
+        int self = player - 1;
+        int other = 1 - self;
+        int offset = row * numberOfFeatures;
+        features[offset + BASIS] = 1;
+        features[offset + PIECES_SELF] = boardFeatures[Board.FEATURE_PIECES + self];
+        features[offset + PIECES_OTHER] = boardFeatures[Board.FEATURE_PIECES + other];
+        features[offset + KINGS_SELF] = boardFeatures[Board.FEATURE_KINGS + self];
+        features[offset + KINGS_OTHER] = boardFeatures[Board.FEATURE_KINGS + other];
+        features[offset + THREATENED_PIECES_SELF] = boardFeatures[Board.FEATURE_THREATENED_PIECES + self];
+        features[offset + THREATENED_PIECES_OTHER] = boardFeatures[Board.FEATURE_THREATENED_PIECES + other];
+        features[offset + STUCK_PIECES_SELF] = boardFeatures[Board.FEATURE_STUCK_PIECES + self];
+        features[offset + STUCK_PIECES_OTHER] = boardFeatures[Board.FEATURE_STUCK_PIECES + other];
+        int rows = Board.FEATURE_NORMAL_PIECES_IN_ROW + self * Board.getSize();
+        for (int i = 0; i < numberOfFeatures - NORMAL_PIECES_IN_ROW; i++) {
+            int boardRow = player == Board.getStartPlayer() ? i : Board.getSize() - i - 1;
+            features[offset + NORMAL_PIECES_IN_ROW + i] = boardFeatures[rows + boardRow];
+        }
+    }
+    
+    
+}
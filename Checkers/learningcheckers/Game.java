@@ -1,37 +1,38 @@
 package learningcheckers;
 
-import java.util.LinkedList;
 import java.util.List;
 
 public class Game {
         
-    private static final int MAX_NUMBER_OF_ROUNDS = 200;
+    public static final int MAX_NUMBER_OF_ROUNDS = 200;
     
-    private LinkedList<Board> trace;
+    // the boards of the game, stored as the start board and the moves played
+    private GameTrace trace;
     private MoveSelector[] mSelect = new MoveSelector[2];
     
     private boolean showVisuals;
     private boolean waitForKeyStroke;
+    // only created when the visuals are switched on, so games without visuals run headless
+    private BoardRenderer renderer;
+    // if set, boards of the tablebase end the game with their known result
+    private Tablebase tablebase;
     
     
     public Game(MoveSelector ms1, MoveSelector ms2, boolean visuals) {        
-        trace = new LinkedList<Board>();
         Board b = new Board();
-        trace.add(b);
+        trace = new GameTrace(b);
         mSelect[0] = ms1;
         mSelect[1] = ms2;
-        showVisuals = visuals;
+        setVisuals(visuals);
         waitForKeyStroke = true;
-        if (visuals) {
-            b.drawBoard();
-            b.show();            
-        }
+        if (visuals) renderer.show(b);
     }
     
     
     
     public void setVisuals(boolean on) {
         showVisuals = on;
+        if (on && renderer == null) renderer = new BoardRenderer();
     }
     
     
@@ -40,10 +41,20 @@ public class Game {
     }
     
     
+    /**
+     * With a tablebase the game ends as soon as a board of the tablebase is reached, 
+     * with the result the tablebase gives for it (with best play of both players).
+     * A win or loss only ends the game if it is reached within the rounds left before 
+     * MAX_NUMBER_OF_ROUNDS, otherwise the game goes on.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+    
+    
     public void closeGameWindow() {
-        if (trace.isEmpty()) return;
-        Board b = trace.get(0);
-        b.closeWindow();
+        if (renderer == null) return;
+        renderer.closeWindow();
     }
     
     
@@ -54,63 +65,78 @@ public class Game {
         mSelect[0].resetBoardMoveMemory();
         mSelect[1].resetBoardMoveMemory();
         setVisuals(visualsOn);
-        Board b = trace.getLast();               
+        // the last board of the trace, every move is applied to it once by trace.addMove
+        Board b = trace.peekLast();
         int actPlayer = Board.getStartPlayer();
         int playerTurn = 0;
         int roundNr = 1;
+        MoveBuffer moves = new MoveBuffer();
         while (!b.boardHasFinalState()) {
 
-            List<Move> li = b.getAllLegalMoves(actPlayer);
-            if (li.isEmpty()) {
-                List<Move> li1 = b.getAllLegalMoves(b.getOtherPlayer(actPlayer));
-                if (li1.isEmpty()) return -1;
+            if (tablebase != null) {
+                int value = tablebase.probe(b);
+                // a win or loss only counts if it can be reached before the game is ended as a draw
+                boolean decided = (Tablebase.isWin(value) || Tablebase.isLoss(value)) 
+                        && Tablebase.getDistance(value) < MAX_NUMBER_OF_ROUNDS - roundNr;
+                if (decided && Tablebase.isWin(value)) return actPlayer;
+                if (decided && Tablebase.isLoss(value)) return b.getOtherPlayer(actPlayer);
+                if (Tablebase.isDraw(value)) return -1;
+            }
+
+            if (b.getAllLegalMoves(actPlayer, moves) == 0) {
+                if (b.getAllLegalMoves(b.getOtherPlayer(actPlayer), moves) == 0) return -1;
                 return b.getOtherPlayer(actPlayer);
             }
             
-            Move m = mSelect[playerTurn].select(li, b, actPlayer);
+            int m = mSelect[playerTurn].select(moves, b, actPlayer);
             
-            if (m == null) return -1;            
-            Board b1 = b.apply(m);
+            if (m == Move.NO_MOVE) return -1;            
             
             roundNr++;
             if (roundNr >= MAX_NUMBER_OF_ROUNDS) return -1;
+            trace.addMove(m);
+            b = trace.peekLast();
             if (showVisuals) {
-                b1.drawBoard();
-                b1.show();
+                renderer.show(b);
                 /*
-                System.out.println(b1.getNumberOfPlayer1Pieces() + " : " + b1.getNumberOfPlayer2Pieces());
+                System.out.println(b.getNumberOfPlayer1Pieces() + " : " + b.getNumberOfPlayer2Pieces());
                 System.out.println(roundNr);
                 */
-                if (waitForKeyStroke) {
-                    while (!b.getViewPort().hasNextTypedChar())  /* do nothing */;
-                    b.getViewPort().getNextTypedChar();
-                }
+                if (waitForKeyStroke) renderer.waitForKeyStroke();
             }
             
             playerTurn = (playerTurn + 1) % 2;
-            actPlayer = b1.getOtherPlayer(actPlayer);
-            trace.addLast(b1);
-            b = b1;
+            actPlayer = b.getOtherPlayer(actPlayer);
         }
         return b.getOtherPlayer(b.getNextPlayer());
     }
     
     
+    /**
+     * Returns the boards of the game, starting with the start board.
+     * The boards are rebuilt from the moves when they are asked for (see GameTrace).
+     */
     public List<Board> getHistory() {
         return trace;
     }
     
     
+    /**
+     * Returns the packed moves played so far, getHistory().get(i + 1) is the board 
+     * after the move at index i.
+     */
+    public MoveBuffer getMoves() {
+        return trace.getMoves();
+    }
+    
+    
     public static void main(String[] args) {
-        int count = 0;
-        for (int round = 0; round < 1000; round++) {
-            Game g = new Game(new LinearSelector(8, 0, 1, 1, 1, 1, 1, 1, 1, 1, 0,0,0,0,0,0,0), 
-                                  new LinearSelector(8, 2.2792686377271774, 6.24143670691181, 2.0119805302918037, 4.932494642868991, 5.998905859081998, 0.2238866893958605, 1.3105324737855193, 0.09206237098973476, 0.08762426611315538, 0, 0, 0, 0, 0, 0), false);
-            if (g.run(false) == 1) count++;
-            g.closeGameWindow();
-            System.out.println(round);
-        }
-        System.out.println("Winner: " + count);
+        MatchRunner runner = new MatchRunner(Runtime.getRuntime().availableProcessors());
+        MatchResult result = runner.play(new LinearSelector(8, 0, 1, 1, 1, 1, 1, 1, 1, 1, 0,0,0,0,0,0,0), 
+                                  new LinearSelector(8, 2.2792686377271774, 6.24143670691181, 2.0119805302918037, 4.932494642868991, 5.998905859081998, 0.2238866893958605, 1.3105324737855193, 0.09206237098973476, 0.08762426611315538, 0, 0, 0, 0, 0, 0), 1000, 0);
+        runner.shutdown();
+        // seen from the first selector, which plays both colours in turn
+        System.out.println("First selector: " + result);
     }
     
 
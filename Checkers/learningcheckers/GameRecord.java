@@ -0,0 +1,115 @@
+package learningcheckers;
+
+import java.util.List;
+
+/**
+ * A game as it is stored by GameRecordWriter: the start position, 
+ * the packed moves, the winner and the ids of the selectors that played it.
+ */
+public class GameRecord {
+    
+    private int gameNumber;
+    private int winner;
+    private int[] selectorIds;
+    private int startPlayer1Pieces;
+    private int startPlayer2Pieces;
+    private int startKings;
+    private int startNextPlayer;
+    private int[] moves;
+    
+    
+    
+    public GameRecord(int gameNumber, Board start, int[] moves, int winner, int player1SelectorId, int player2SelectorId) {
+        this(gameNumber, start.getPiecesMask(1), start.getPiecesMask(2), start.getKingsMask(1) | start.getKingsMask(2), 
+                start.getNextPlayer(), moves, winner, player1SelectorId, player2SelectorId);
+    }
+    
+    
+    
+    GameRecord(int gameNumber, int player1Pieces, int player2Pieces, int kings, int nextPlayer, 
+            int[] moves, int winner, int player1SelectorId, int player2SelectorId) {
+        this.gameNumber = gameNumber;
+        this.startPlayer1Pieces = player1Pieces;
+        this.startPlayer2Pieces = player2Pieces;
+        this.startKings = kings;
+        this.startNextPlayer = nextPlayer;
+        this.moves = moves;
+        this.winner = winner;
+        this.selectorIds = new int[] {player1SelectorId, player2SelectorId};
+    }
+    
+    
+    
+    public int getGameNumber() {
+        return gameNumber;
+    }
+    
+    
+    
+    /**
+     * Returns the number of the winning player or -1 for a draw (see Game.run).
+     */
+    public int getWinner() {
+        return winner;
+    }
+    
+    
+    
+    public int getSelectorId(int player) {
+        return selectorIds[player - 1];
+    }
+    
+    
+    
+    public int getNumberOfPlies() {
+        return moves.length;
+    }
+    
+    
+    
+    public int getMove(int ply) {
+        return moves[ply];
+    }
+    
+    
+    
+    public Board getStartBoard() {
+        return Board.fromMasks(startPlayer1Pieces, startPlayer2Pieces, startKings, startNextPlayer);
+    }
+    
+    
+    
+    /**
+     * Returns the board after the given number of plies, 0 gives the start position.
+     */
+    public Board getBoard(int ply) {
+        Board b = getStartBoard();
+        for (int i = 0; i < ply; i++) b.makeMove(moves[i], null);
+        return b;
+    }
+    
+    
+    
+    /**
+     * Returns all boards of the game, starting with the start position (like Game.getHistory).
+     */
+    public List<Board> getHistory() {
+        return new GameTrace(getStartBoard(), moves);
+    }
+    
+    
+    
+    /**
+     * Adds the features of every board of the game after the start position 
+     * from the point of view of player to batch.
+     */
+    public void addFeatures(FeatureBatch batch, int player) {
+        Board b = getStartBoard();
+        for (int i = 0; i < moves.length; i++) {
+            b.makeMove(moves[i], null);
+            batch.add(b, player);
+        }
+    }
+    
+    
+}
@@ -0,0 +1,96 @@
+package learningcheckers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the games of a file written by GameRecordWriter one after another.
+ * The chunks of the file are memory-mapped one at a time, so files of any size can be read.
+ * Not thread-safe.
+ */
+public class GameRecordReader implements Closeable {
+    
+    private FileChannel channel;
+    private long size;
+    private long nextChunk;
+    private MappedByteBuffer chunk;
+    private ByteBuffer chunkHeader = ByteBuffer.allocate(GameRecordWriter.CHUNK_HEADER_BYTES);
+    
+    
+    
+    public GameRecordReader(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not open " + file + ".", e);
+        }
+        nextChunk = 0;
+    }
+    
+    
+    
+    /**
+     * Returns the next game of the file or null if there is none.
+     */
+    public GameRecord next() {
+        while (chunk == null || !chunk.hasRemaining()) 
+            if (!mapNextChunk()) return null;
+        int gameNumber = chunk.getInt();
+        int winner = chunk.get();
+        int player1SelectorId = chunk.getShort() & 0xFFFF;
+        int player2SelectorId = chunk.getShort() & 0xFFFF;
+        int player1Pieces = chunk.getInt();
+        int player2Pieces = chunk.getInt();
+        int kings = chunk.getInt();
+        int nextPlayer = chunk.get();
+        int plies = chunk.getShort() & 0xFFFF;
+        int[] moves = new int[plies];
+        for (int i = 0; i < plies; i++) 
+            moves[i] = (chunk.get() & 0xFF) << 16 | (chunk.get() & 0xFF) << 8 | (chunk.get() & 0xFF);
+        return new GameRecord(gameNumber, player1Pieces, player2Pieces, kings, nextPlayer, moves, 
+                winner == 0 ? -1 : winner, player1SelectorId, player2SelectorId);
+    }
+    
+    
+    
+    private boolean mapNextChunk() {
+        chunk = null;
+        if (nextChunk + GameRecordWriter.CHUNK_HEADER_BYTES > size) return false;
+        try {
+            chunkHeader.clear();
+            while (chunkHeader.hasRemaining()) 
+                if (channel.read(chunkHeader, nextChunk + chunkHeader.position()) < 0) return false;
+            if (chunkHeader.getInt(0) != GameRecordWriter.CHUNK_MAGIC) 
+                throw new RuntimeException("No chunk of games at position " + nextChunk + ".");
+            int bytes = chunkHeader.getInt(4);
+            long start = nextChunk + GameRecordWriter.CHUNK_HEADER_BYTES;
+            // an incomplete chunk at the end of the file is ignored
+            if (start + bytes > size) return false;
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, bytes);
+            nextChunk = start + bytes;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not read games.", e);
+        }
+    }
+    
+    
+    
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not close the game file.", e);
+        }
+    }
+    
+    
+}
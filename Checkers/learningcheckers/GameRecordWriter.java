@@ -0,0 +1,117 @@
+package learningcheckers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends games to a binary file. The games are collected in a buffer and written 
+ * in chunks, each chunk starts with CHUNK_MAGIC, the number of bytes of the games 
+ * in the chunk and the number of games. A game takes RECORD_HEADER_BYTES plus 
+ * BYTES_PER_PLY per ply:
+ * 
+ *   int game number, byte winner (0 for a draw), short selector id of player 1, 
+ *   short selector id of player 2, int pieces of player 1, int pieces of player 2, 
+ *   int kings (bitboards of the start position, see Board.getPiecesMask), 
+ *   byte player to move, short number of plies, 
+ *   and then the packed moves (see Move.pack) in 3 bytes each.
+ * 
+ * A chunk that was not written completely (for example because the program was stopped) 
+ * is ignored by GameRecordReader. The writer can be used by several threads.
+ */
+public class GameRecordWriter implements Closeable {
+    
+    public static final int CHUNK_MAGIC = 0x434B4743;
+    public static final int CHUNK_HEADER_BYTES = 12;
+    public static final int RECORD_HEADER_BYTES = 24;
+    public static final int BYTES_PER_PLY = 3;
+    private static final int DEFAULT_BUFFER_BYTES = 1 << 20;
+    
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private int gamesInBuffer;
+    
+    
+    
+    public GameRecordWriter(Path file) {
+        this(file, DEFAULT_BUFFER_BYTES);
+    }
+    
+    
+    
+    public GameRecordWriter(Path file, int bufferBytes) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not open " + file + ".", e);
+        }
+        buffer = ByteBuffer.allocateDirect(bufferBytes);
+        buffer.position(CHUNK_HEADER_BYTES);
+        gamesInBuffer = 0;
+    }
+    
+    
+    
+    public synchronized void write(GameRecord game) {
+        int bytes = RECORD_HEADER_BYTES + BYTES_PER_PLY * game.getNumberOfPlies();
+        if (bytes > buffer.capacity() - CHUNK_HEADER_BYTES) 
+            throw new RuntimeException("Game " + game.getGameNumber() + " does not fit into the buffer of " + buffer.capacity() + " bytes.");
+        if (bytes > buffer.remaining()) flush();
+        Board start = game.getStartBoard();
+        buffer.putInt(game.getGameNumber());
+        buffer.put((byte)Math.max(game.getWinner(), 0));
+        buffer.putShort((short)game.getSelectorId(1));
+        buffer.putShort((short)game.getSelectorId(2));
+        buffer.putInt(start.getPiecesMask(1));
+        buffer.putInt(start.getPiecesMask(2));
+        buffer.putInt(start.getKingsMask(1) | start.getKingsMask(2));
+        buffer.put((byte)start.getNextPlayer());
+        buffer.putShort((short)game.getNumberOfPlies());
+        for (int i = 0; i < game.getNumberOfPlies(); i++) {
+            int m = game.getMove(i);
+            buffer.put((byte)(m >>> 16));
+            buffer.put((byte)(m >>> 8));
+            buffer.put((byte)m);
+        }
+        gamesInBuffer++;
+    }
+    
+    
+    
+    /**
+     * Writes the buffered games to the file as one chunk.
+     */
+    public synchronized void flush() {
+        if (gamesInBuffer == 0) return;
+        buffer.putInt(0, CHUNK_MAGIC);
+        buffer.putInt(4, buffer.position() - CHUNK_HEADER_BYTES);
+        buffer.putInt(8, gamesInBuffer);
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write games.", e);
+        }
+        buffer.clear();
+        buffer.position(CHUNK_HEADER_BYTES);
+        gamesInBuffer = 0;
+    }
+    
+    
+    
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not close the game file.", e);
+        }
+    }
+    
+    
+}
@@ -0,0 +1,139 @@
+package learningcheckers;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * The boards of a game, stored as the start board and the packed moves.
+ * Boards are rebuilt when they are asked for: every keyframeInterval plies a copy 
+ * of the board is kept, so get(i) applies at most keyframeInterval - 1 moves, 
+ * iterating over the trace applies one move per board.
+ * The returned boards are new objects and may be changed by the caller.
+ */
+public class GameTrace extends AbstractList<Board> implements RandomAccess {
+    
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 16;
+    
+    private int keyframeInterval;
+    private MoveBuffer moves;
+    // keyframes.get(k) is the board after k * keyframeInterval plies
+    private List<Board> keyframes;
+    private Board last;
+    
+    
+    
+    public GameTrace(Board start) {
+        this(start, DEFAULT_KEYFRAME_INTERVAL);
+    }
+    
+    
+    
+    public GameTrace(Board start, int keyframeInterval) {
+        if (keyframeInterval < 1) throw new RuntimeException("The keyframe interval must be at least 1: " + keyframeInterval);
+        this.keyframeInterval = keyframeInterval;
+        moves = new MoveBuffer();
+        keyframes = new ArrayList<>();
+        keyframes.add((Board)start.clone());
+        last = (Board)start.clone();
+    }
+    
+    
+    
+    /**
+     * Creates the trace of the game that starts with start and continues with the given packed moves.
+     */
+    public GameTrace(Board start, int[] moves) {
+        this(start);
+        for (int m : moves) addMove(m);
+    }
+    
+    
+    
+    /**
+     * Appends the board that results from applying packedMove to the last board.
+     */
+    public void addMove(int packedMove) {
+        last.makeMove(packedMove, null);
+        moves.add(packedMove);
+        if (moves.size() % keyframeInterval == 0) keyframes.add((Board)last.clone());
+    }
+    
+    
+    
+    @Override
+    public Board get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index " + index + " of a trace with " + size() + " boards.");
+        int keyframe = index / keyframeInterval;
+        Board b = (Board)keyframes.get(keyframe).clone();
+        for (int ply = keyframe * keyframeInterval; ply < index; ply++) b.makeMove(moves.get(ply), null);
+        return b;
+    }
+    
+    
+    
+    public Board getLast() {
+        return (Board)last.clone();
+    }
+    
+    
+    
+    /**
+     * Returns the last board itself instead of a copy, so a game can advance on it without
+     * creating boards. It changes with every addMove and must not be changed by the caller.
+     */
+    Board peekLast() {
+        return last;
+    }
+    
+    
+    
+    @Override
+    public int size() {
+        return moves.size() + 1;
+    }
+    
+    
+    
+    public int getNumberOfPlies() {
+        return moves.size();
+    }
+    
+    
+    
+    /**
+     * Returns the packed moves of the trace. The buffer must not be changed.
+     */
+    public MoveBuffer getMoves() {
+        return moves;
+    }
+    
+    
+    
+    @Override
+    public Iterator<Board> iterator() {
+        return new Iterator<Board>() {
+            private Board current = null;
+            private int index = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+            
+            @Override
+            public Board next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                if (current == null) current = (Board)keyframes.get(0).clone();
+                else current.makeMove(moves.get(index - 1), null);
+                index++;
+                return (Board)current.clone();
+            }
+        };
+    }
+    
+    
+}
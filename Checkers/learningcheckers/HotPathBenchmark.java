@@ -0,0 +1,250 @@
+package learningcheckers;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures the hot paths of the engine: Board.apply, Board.clone, Board.getAllLegalMoves,
+ * Board.isStuck/isThreatened, LinearSelector.evaluate, LinearSelector.select and
+ * whole games without visuals (Game.run).
+ *
+ * The board operations run on a fixed corpus of mid-game and endgame positions taken from
+ * random games with a fixed seed, so the numbers of two versions of the engine can be compared.
+ * Every benchmark is run for some warmup iterations first, then the time and the bytes allocated
+ * per operation are reported for the measured iterations (mean and best iteration).
+ *
+ * Boards keep their threatened and stuck pieces once computed: evaluate and select run on
+ * boards whose features are known, isStuck/isThreatened creates every board with
+ * Board.fromMasks first, so that this time includes computing the features.
+ *
+ * Arguments of main: positions per corpus (default 1000), warmup iterations (default 5),
+ * measured iterations (default 10) and games per iteration (default 20).
+ */
+public class HotPathBenchmark {
+    
+    private static final long SEED = 42;
+    private static final int MID_GAME_MIN_PLY = 10;
+    private static final int MID_GAME_MIN_PIECES = 14;
+    private static final int ENDGAME_MAX_PIECES = 8;
+    
+    private static final com.sun.management.ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean() : null;
+    
+    // results of the operations are added here, so the JIT can not remove them
+    private static long checksum;
+    
+    private int warmupIterations;
+    private int measuredIterations;
+    
+    
+    
+    public HotPathBenchmark(int warmupIterations, int measuredIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+    }
+    
+    
+    
+    /**
+     * Positions of one phase of the game, together with their legal moves.
+     */
+    private static class Corpus {
+        
+        private String name;
+        private List<Board> boards = new ArrayList<>();
+        private List<int[]> moves = new ArrayList<>();
+        private int numberOfMoves;
+        
+        
+        
+        private Corpus(String name) {
+            this.name = name;
+        }
+        
+        
+        
+        private void add(Board b, MoveBuffer legalMoves) {
+            boards.add((Board)b.clone());
+            moves.add(legalMoves.toArray());
+            numberOfMoves += legalMoves.size();
+        }
+        
+        
+        
+        private int size() {
+            return boards.size();
+        }
+    }
+    
+    
+    
+    /**
+     * Plays random games until both corpora have numberOfPositions distinct positions.
+     */
+    private static Corpus[] createCorpora(int numberOfPositions) {
+        Corpus midGame = new Corpus("mid-game");
+        Corpus endgame = new Corpus("endgame");
+        Set<Long> seen = new HashSet<>();
+        SplittableRandom rand = new SplittableRandom(SEED);
+        MoveBuffer moves = new MoveBuffer();
+        Board b = new Board();
+        int ply = 0;
+        while (midGame.size() < numberOfPositions || endgame.size() < numberOfPositions) {
+            if (b.boardHasFinalState() || ply >= Game.MAX_NUMBER_OF_ROUNDS || b.getAllLegalMoves(b.getNextPlayer(), moves) == 0) {
+                b = new Board();
+                ply = 0;
+                continue;
+            }
+            int pieces = b.getNumberOfPlayer1Pieces() + b.getNumberOfPlayer2Pieces();
+            Corpus corpus = null;
+            if (ply >= MID_GAME_MIN_PLY && pieces >= MID_GAME_MIN_PIECES) corpus = midGame;
+            else if (pieces <= ENDGAME_MAX_PIECES) corpus = endgame;
+            if (corpus != null && corpus.size() < numberOfPositions && seen.add(b.getBoardHash())) corpus.add(b, moves);
+            b = b.apply(moves.get(rand.nextInt(moves.size())));
+            ply++;
+        }
+        return new Corpus[] {midGame, endgame};
+    }
+    
+    
+    
+    /**
+     * Runs the iteration warmupIterations + measuredIterations times and prints
+     * the time and the allocated bytes per operation. The iteration returns its number of operations.
+     */
+    public void measure(String name, LongSupplier iteration) {
+        for (int i = 0; i < warmupIterations; i++) iteration.getAsLong();
+        double sumNanos = 0;
+        double bestNanos = Double.MAX_VALUE;
+        double sumBytes = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            long bytes = getAllocatedBytes();
+            long start = System.nanoTime();
+            long operations = iteration.getAsLong();
+            double nanos = (double)(System.nanoTime() - start) / operations;
+            sumBytes += (double)(getAllocatedBytes() - bytes) / operations;
+            sumNanos += nanos;
+            bestNanos = Math.min(bestNanos, nanos);
+        }
+        System.out.println(String.format("%-40s %12.1f ns/op (best %.1f) %10.1f B/op", name,
+                sumNanos / measuredIterations, bestNanos, THREADS == null ? Double.NaN : sumBytes / measuredIterations));
+    }
+    
+    
+    
+    private static long getAllocatedBytes() {
+        if (THREADS == null) return 0;
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    
+    
+    public void run(Corpus corpus, LinearSelector selector) {
+        List<Board> boards = corpus.boards;
+        List<int[]> moves = corpus.moves;
+        String suffix = " (" + corpus.name + ")";
+        
+        measure("Board.apply" + suffix, () -> {
+            for (int i = 0; i < boards.size(); i++) {
+                Board b = boards.get(i);
+                for (int m : moves.get(i)) checksum += b.apply(m).getBoardHash();
+            }
+            return corpus.numberOfMoves;
+        });
+        
+        measure("Board.clone" + suffix, () -> {
+            for (Board b : boards) checksum += ((Board)b.clone()).getBoardHash();
+            return boards.size();
+        });
+        
+        MoveBuffer buffer = new MoveBuffer();
+        measure("Board.getAllLegalMoves" + suffix, () -> {
+            for (Board b : boards) checksum += b.getAllLegalMoves(b.getNextPlayer(), buffer);
+            return boards.size();
+        });
+        
+        int player1 = Board.getStartPlayer();
+        int player2 = new Board().getOtherPlayer(player1);
+        int[][] masks = new int[boards.size()][];
+        for (int i = 0; i < masks.length; i++) {
+            Board b = boards.get(i);
+            masks[i] = new int[] {b.getPiecesMask(player1), b.getPiecesMask(player2),
+                    b.getKingsMask(player1) | b.getKingsMask(player2), b.getNextPlayer()};
+        }
+        measure("Board.isStuck/isThreatened" + suffix, () -> {
+            for (int[] m : masks) {
+                Board b = Board.fromMasks(m[0], m[1], m[2], m[3]);
+                for (int x = 0; x < Board.getSize(); x++) {
+                    for (int y = x % 2; y < Board.getSize(); y += 2) {
+                        if (b.isStuck(player1, x, y)) checksum++;
+                        if (b.isStuck(player2, x, y)) checksum++;
+                        if (b.isThreatened(player1, x, y)) checksum++;
+                        if (b.isThreatened(player2, x, y)) checksum++;
+                    }
+                }
+            }
+            return masks.length;
+        });
+        
+        measure("LinearSelector.evaluate" + suffix, () -> {
+            double sum = 0;
+            for (Board b : boards) sum += selector.evaluate(b, b.getNextPlayer());
+            checksum += (long)sum;
+            return boards.size();
+        });
+        
+        MoveBuffer legalMoves = new MoveBuffer();
+        measure("LinearSelector.select" + suffix, () -> {
+            // the positions are distinct, so the move memory never blocks a move within one iteration
+            selector.resetBoardMoveMemory();
+            for (int i = 0; i < boards.size(); i++) {
+                Board b = boards.get(i);
+                legalMoves.clear();
+                for (int m : moves.get(i)) legalMoves.add(m);
+                checksum += selector.select(legalMoves, b, b.getNextPlayer());
+            }
+            return boards.size();
+        });
+    }
+    
+    
+    
+    public void runGames(LinearSelector first, LinearSelector second, int numberOfGames) {
+        long[] seed = {SEED};
+        measure("Game.run, " + numberOfGames + " games", () -> {
+            for (int i = 0; i < numberOfGames; i++) {
+                first.setSeed(seed[0]++);
+                second.setSeed(seed[0]++);
+                Game g = new Game(first, second, false);
+                checksum += g.run(false) + g.getMoves().size();
+            }
+            return numberOfGames;
+        });
+    }
+    
+    
+    
+    public static void main(String[] args) {
+        int numberOfPositions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int numberOfGames = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        
+        Corpus[] corpora = createCorpora(numberOfPositions);
+        HotPathBenchmark benchmark = new HotPathBenchmark(warmup, iterations);
+        LinearSelector selector = new HumanIntuitionLinearSelector();
+        selector.setSeed(SEED);
+        for (Corpus corpus : corpora) benchmark.run(corpus, selector);
+        benchmark.runGames(new HumanIntuitionLinearSelector(), new HumanIntuitionLinearSelector(), numberOfGames);
+        if (THREADS == null) System.out.println("Allocated bytes are not available on this JVM.");
+        System.out.println("checksum " + checksum);
+    }
+    
+    
+}
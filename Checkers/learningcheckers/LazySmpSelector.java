@@ -0,0 +1,209 @@
+package learningcheckers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Selects moves by a parallel alpha-beta search ("Lazy SMP").
+ * 
+ * The main thread and numberOfThreads - 1 helper threads all run their own
+ * AlphaBetaSelector search on their own copy of the board. They share one 
+ * TranspositionTable, so the helpers fill the table with results the main thread
+ * can use. Every other helper starts one ply deeper, so that they do not all do the same 
+ * work at the same time. The helpers also get the root moves in a rotated order, but
+ * the move ordering of AlphaBetaSelector sorts them again, so the rotation only decides 
+ * the order of root moves the ordering ranks equally.
+ * When the main thread is done, the helpers are stopped and the best move 
+ * of the main thread is returned.
+ * 
+ * With one thread the search is the deterministic single threaded AlphaBetaSelector search.
+ */
+public class LazySmpSelector extends MoveSelector {
+    
+    private AlphaBetaSelector[] searchers;
+    private TranspositionTable table;
+    private ExecutorService helpers;
+    
+    // statistics of the last search, per thread
+    private long[] lastNodes;
+    private long lastNanos;
+    
+    
+    
+    /**
+     * @param evaluator the selector whose evaluate method scores the leaves, every thread uses a clone of it.
+     * @param numberOfThreads number of searching threads including the calling thread.
+     * @param maxDepth the search stops after this many plies.
+     * @param millisPerMove wall-clock time per move in milliseconds, 0 for no limit.
+     * @param tableMegabytes size of the shared transposition table.
+     */
+    public LazySmpSelector(LinearSelector evaluator, int numberOfThreads, int maxDepth, long millisPerMove, int tableMegabytes) {
+        super();
+        if (numberOfThreads < 1) throw new RuntimeException("At least one thread is needed: " + numberOfThreads);
+        table = new TranspositionTable(tableMegabytes);
+        searchers = new AlphaBetaSelector[numberOfThreads];
+        for (int i = 0; i < numberOfThreads; i++) 
+            searchers[i] = new AlphaBetaSelector((LinearSelector)evaluator.clone(), maxDepth, millisPerMove, 0, table);
+        lastNodes = new long[numberOfThreads];
+        if (numberOfThreads > 1) {
+            helpers = Executors.newFixedThreadPool(numberOfThreads - 1, r -> {
+                Thread t = new Thread(r, "LazySmpSelector helper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+    
+    
+    
+    @Override
+    public void resetBoardMoveMemory() {
+        super.resetBoardMoveMemory();
+        // called by the constructor of MoveSelector before the searchers exist
+        if (searchers != null) 
+            for (AlphaBetaSelector searcher : searchers) searcher.resetBoardMoveMemory();
+    }
+    
+    
+    
+    @Override
+    public Move select(List<Move> legalMoves, Board b, int player) {
+        return selectPacked(legalMoves, b, player);
+    }
+    
+    
+    
+    @Override
+    public int select(MoveBuffer legalMoves, Board b, int player) {
+        MoveBuffer rootMoves = new MoveBuffer(legalMoves.size());
+        for (int i = 0; i < legalMoves.size(); i++) 
+            if (!moveMemoryContains(b, legalMoves.get(i))) rootMoves.add(legalMoves.get(i));
+        if (rootMoves.isEmpty()) return Move.NO_MOVE;
+        
+        long start = System.nanoTime();
+        table.newSearch();
+        List<Future<Integer>> running = new ArrayList<>(searchers.length - 1);
+        for (int i = 1; i < searchers.length; i++) {
+            AlphaBetaSelector helper = searchers[i];
+            MoveBuffer helperMoves = rotate(rootMoves, i);
+            int firstDepth = 1 + i % 2;
+            helper.resetStop();
+            running.add(helpers.submit(() -> helper.searchMoves(b, helperMoves, player, firstDepth)));
+        }
+        searchers[0].resetStop();
+        int best = searchers[0].searchMoves(b, rootMoves, player, 1);
+        for (int i = 1; i < searchers.length; i++) searchers[i].stop();
+        for (Future<Integer> f : running) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Helper search failed.", e.getCause());
+            }
+        }
+        lastNanos = System.nanoTime() - start;
+        for (int i = 0; i < searchers.length; i++) lastNodes[i] = searchers[i].getLastNodes();
+        
+        registerMoveOnBoard(b, best);
+        return best;
+    }
+    
+    
+    
+    private MoveBuffer rotate(MoveBuffer moves, int by) {
+        MoveBuffer rotated = new MoveBuffer(moves.size());
+        for (int i = 0; i < moves.size(); i++) rotated.add(moves.get((i + by) % moves.size()));
+        return rotated;
+    }
+    
+    
+    
+    public int getNumberOfThreads() {
+        return searchers.length;
+    }
+    
+    
+    
+    /**
+     * Returns the depth the main thread completed for the last move.
+     */
+    public int getLastDepth() {
+        return searchers[0].getLastDepth();
+    }
+    
+    
+    
+    /**
+     * Returns the number of nodes searched by the given thread (0 is the main thread) for the last move.
+     */
+    public long getLastNodes(int thread) {
+        return lastNodes[thread];
+    }
+    
+    
+    
+    /**
+     * Returns the nodes per second of the given thread (0 is the main thread) for the last move.
+     */
+    public double getNodesPerSecond(int thread) {
+        if (lastNanos == 0) return 0;
+        return lastNodes[thread] * 1e9 / lastNanos;
+    }
+    
+    
+    
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+    
+    
+    
+    /**
+     * Stops the helper threads. The selector can not be used any more afterwards.
+     */
+    public void shutdown() {
+        if (helpers != null) helpers.shutdownNow();
+    }
+    
+    
+    
+    /**
+     * Same as shutdown.
+     */
+    @Override
+    public void close() {
+        shutdown();
+    }
+    
+    
+    
+    /**
+     * The copy has its own threads and its own transposition table,
+     * close it when it is not needed any more.
+     */
+    @Override
+    public Object clone() {
+        AlphaBetaSelector main = searchers[0];
+        return new LazySmpSelector(main.getEvaluator(), searchers.length, 
+                main.getMaxDepth(), main.getMillisPerMove(), table.getMegabytes());
+    }
+    
+    
+    
+    public String getStatistics() {
+        String s = "depth " + getLastDepth() + ", " + (lastNanos / 1000000) + " ms";
+        long total = 0;
+        for (int i = 0; i < searchers.length; i++) {
+            s = s + "\nthread " + i + ": " + lastNodes[i] + " nodes, " + Math.round(getNodesPerSecond(i)) + " nodes/s";
+            total = total + lastNodes[i];
+        }
+        return s + "\ntotal: " + total + " nodes, " + (lastNanos == 0 ? 0 : Math.round(total * 1e9 / lastNanos)) + " nodes/s";
+    }
+    
+    
+}
@@ -1,28 +1,26 @@
 package learningcheckers;
 
-import java.util.Calendar;
 import java.util.List;
-import java.util.Random;
-import java.util.TreeMap;
-import java.util.function.IntFunction;
+import java.util.SplittableRandom;
 
 public class LinearSelector extends MoveSelector {
 
-    private double factBasis;
-    private double factNrPiecesSelf;
-    private double factNrPiecesOther;
-    private double factNrKingsSelf;
-    private double factNrKingsOther;
-    private double factNrThreatenedPiecesSelf;
-    private double factNrThreatenedPiecesOther;
-    private double factNrStuckSelfPieces;
-    private double factNrStuckOtherPieces;
-    // these factors are for the own pieces of a player
-    // where the factor at index 0 is for the row that is closest to 
+    // the factors of the linear function, in the order of the features 
+    // of a FeatureExtractor: basis, pieces self and other, kings self and other,
+    // threatened pieces self and other, stuck pieces self and other and
+    // then the factors for the number of own normal pieces in a row,
+    // where the factor for row 0 is for the row that is closest to 
     // the own player side (so the indices of the rows concur with the ones of the 
     // board for the start player but NOT for the other player)
-    private double factNrOfNormalPiecesInRow[];   
-    private static Random rand = new Random(Calendar.getInstance().getTimeInMillis());
+    private double[] weights;
+    private SplittableRandom random = new SplittableRandom();
+    
+    // scratch space for evaluateChildren, therefore a selector must not be used 
+    // by more than one thread at a time (clone it instead)
+    private FeatureExtractor extractor;
+    private double[] childFeatures = new double[0];
+    private double[] childScores = new double[0];
+    private double[] childFinalScores = new double[0];
 
     
     
@@ -30,16 +28,8 @@ public class LinearSelector extends MoveSelector {
     
     
     public LinearSelector(int boardSize) {
-        factBasis = 0;
-        factNrPiecesSelf = 0;
-        factNrPiecesOther = 0;
-        factNrKingsSelf = 0;
-        factNrKingsOther = 0;
-        factNrThreatenedPiecesSelf = 0;
-        factNrThreatenedPiecesOther = 0;
-        factNrStuckSelfPieces = 0;
-        factNrStuckOtherPieces = 0;
-        factNrOfNormalPiecesInRow = new double[boardSize-1];
+        weights = new double[FeatureExtractor.getNumberOfFeatures(boardSize)];
+        extractor = new FeatureExtractor(boardSize);
     }
     
     
@@ -50,19 +40,18 @@ public class LinearSelector extends MoveSelector {
             double factNrThreatenedPiecesSelf, double factNrThreatenedPiecesOther, 
             double factNrStuckSelfPieces, double factNrStuckOtherPieces,
             double ... rowFact) {
-        super();
-        this.factBasis = factBasis;
-        this.factNrPiecesSelf = factNrPiecesSelf;
-        this.factNrPiecesOther = factNrPiecesOther;
-        this.factNrKingsSelf = factNrKingsSelf;
-        this.factNrKingsOther = factNrKingsOther;
-        this.factNrThreatenedPiecesSelf = factNrThreatenedPiecesSelf;
-        this.factNrThreatenedPiecesOther = factNrThreatenedPiecesOther;
-        this.factNrStuckSelfPieces = factNrStuckSelfPieces;
-        this.factNrStuckOtherPieces = factNrStuckOtherPieces;
-        factNrOfNormalPiecesInRow = new double[boardSize-1];
+        this(boardSize);
+        weights[FeatureExtractor.BASIS] = factBasis;
+        weights[FeatureExtractor.PIECES_SELF] = factNrPiecesSelf;
+        weights[FeatureExtractor.PIECES_OTHER] = factNrPiecesOther;
+        weights[FeatureExtractor.KINGS_SELF] = factNrKingsSelf;
+        weights[FeatureExtractor.KINGS_OTHER] = factNrKingsOther;
+        weights[FeatureExtractor.THREATENED_PIECES_SELF] = factNrThreatenedPiecesSelf;
+        weights[FeatureExtractor.THREATENED_PIECES_OTHER] = factNrThreatenedPiecesOther;
+        weights[FeatureExtractor.STUCK_PIECES_SELF] = factNrStuckSelfPieces;
+        weights[FeatureExtractor.STUCK_PIECES_OTHER] = factNrStuckOtherPieces;
         for (int i = 0; i < rowFact.length; i++) 
-               factNrOfNormalPiecesInRow[i] = rowFact[i];
+               weights[FeatureExtractor.NORMAL_PIECES_IN_ROW + i] = rowFact[i];
     }
 
 
@@ -70,30 +59,64 @@ public class LinearSelector extends MoveSelector {
 
     @Override
     public Move select(List<Move> legalMoves, Board b, int player) {
-        Move best = null;
-        TreeMap<Double, Move> evalMap = new TreeMap<>();
-        for (Move candidate: legalMoves) {
-            Board b1 = b.apply(candidate);
-            double score = evaluate(b1, player);
-            while (evalMap.containsKey(score)) {
-                int before = b.getNumberOfPiecesFor(b.getOtherPlayer(player));
-                int after = b1.getNumberOfPiecesFor(b.getOtherPlayer(player));
-                if (after < before) {
-                    score = score + 0.000001 + score/100;
-                }
-                else score = score + score/100 * (rand.nextDouble() - 0.5) + (rand.nextDouble() - 0.5) * 0.0000000000001;
+        return selectPacked(legalMoves, b, player);
+    }
+    
+    
+    
+    /**
+     * Selects the move whose resulting board has the highest value (see evaluate),
+     * skipping moves that are in the move memory. Ties are broken as follows: 
+     * a capture is preferred to a move that captures nothing, if that does not decide 
+     * one of the tied moves is chosen uniformly at random, using the random generator 
+     * of this selector (see setSeed).
+     */
+    @Override
+    public int select(MoveBuffer legalMoves, Board b, int player) {
+        int count = legalMoves.size();
+        if (childScores.length < count) childScores = new double[count];
+        evaluateChildren(b, legalMoves, player, childScores);
+        // moves found in the move memory are marked with NaN and the search is repeated,
+        // so the memory is only looked up for the best moves
+        for (int round = 0; round < count; round++) {
+            int best = -1;
+            int ties = 0;
+            for (int i = 0; i < count; i++) {
+                double score = childScores[i];
+                if (Double.isNaN(score)) continue;
+                int c = best < 0 ? 1 : compare(score, legalMoves.get(i), childScores[best], legalMoves.get(best));
+                if (c > 0) {
+                    best = i;
+                    ties = 1;
+                } else if (c == 0 && random.nextInt(++ties) == 0) best = i;
             }
-            evalMap.put(score, candidate);
-        }
-        for (Double score : evalMap.descendingKeySet()) {
-            Move candidate = evalMap.get(score);
+            if (best < 0) break;
+            int candidate = legalMoves.get(best);
             if (!moveMemoryContains(b, candidate)) {
-                best = candidate;
-                break;
+                registerMoveOnBoard(b, candidate);
+                return candidate;
             }
+            childScores[best] = Double.NaN;
         }
-        if (best != null) registerMoveOnBoard(b, best);
-        return best;
+        return Move.NO_MOVE;
+    }
+    
+    
+    
+    private static int compare(double score, int move, double otherScore, int otherMove) {
+        if (score != otherScore) return score > otherScore ? 1 : -1;
+        return Boolean.compare(Move.isCapture(move), Move.isCapture(otherMove));
+    }
+    
+    
+    
+    /**
+     * Seeds the random generator that breaks ties in select, 
+     * so that games with this selector can be repeated.
+     */
+    @Override
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
     }
     
     
@@ -106,22 +129,83 @@ public class LinearSelector extends MoveSelector {
             else return -100;
         } else {
             double rowFact = 0;
+            int rows = weights.length - FeatureExtractor.NORMAL_PIECES_IN_ROW;
             if (player == Board.getStartPlayer()) 
-                for (int i = 0; i < factNrOfNormalPiecesInRow.length; i++)                 
-                    rowFact = rowFact + b.getNumberOfNormalPiecesInRow(i, player) * factNrOfNormalPiecesInRow[i];
+                for (int i = 0; i < rows; i++)                 
+                    rowFact = rowFact + b.getNumberOfNormalPiecesInRow(i, player) * weights[FeatureExtractor.NORMAL_PIECES_IN_ROW + i];
             else 
-                for (int i = 0; i < factNrOfNormalPiecesInRow.length; i++)                 
-                    rowFact = rowFact + b.getNumberOfNormalPiecesInRow(Board.getSize() - i - 1, player) * factNrOfNormalPiecesInRow[i];
-            return rowFact + factBasis + 
-                factNrPiecesSelf * getSelfPieces(b, player) + 
-                factNrPiecesOther * getOtherPieces(b, player) +
-                factNrKingsSelf * getSelfKings(b, player) +
-                factNrKingsOther * getOtherKings(b, player) + 
-                factNrThreatenedPiecesSelf * piecesThreatened(b, player) +
-                factNrThreatenedPiecesOther * piecesThreatened(b, b.getOtherPlayer(player)) + 
-                factNrStuckSelfPieces * piecesStuck(b, player) +
-                factNrStuckOtherPieces * piecesStuck(b, b.getOtherPlayer(player));
+                for (int i = 0; i < rows; i++)                 
+                    rowFact = rowFact + b.getNumberOfNormalPiecesInRow(Board.getSize() - i - 1, player) * weights[FeatureExtractor.NORMAL_PIECES_IN_ROW + i];
+            return rowFact + weights[FeatureExtractor.BASIS] + 
+                weights[FeatureExtractor.PIECES_SELF] * getSelfPieces(b, player) + 
+                weights[FeatureExtractor.PIECES_OTHER] * getOtherPieces(b, player) +
+                weights[FeatureExtractor.KINGS_SELF] * getSelfKings(b, player) +
+                weights[FeatureExtractor.KINGS_OTHER] * getOtherKings(b, player) + 
+                weights[FeatureExtractor.THREATENED_PIECES_SELF] * piecesThreatened(b, player) +
+                weights[FeatureExtractor.THREATENED_PIECES_OTHER] * piecesThreatened(b, b.getOtherPlayer(player)) + 
+                weights[FeatureExtractor.STUCK_PIECES_SELF] * piecesStuck(b, player) +
+                weights[FeatureExtractor.STUCK_PIECES_OTHER] * piecesStuck(b, b.getOtherPlayer(player));
+        }
+    }
+    
+    
+    
+    /**
+     * Evaluates count rows of the row-major feature matrix features (see FeatureExtractor)
+     * and writes the results into scores. Unlike evaluate no final states are detected here.
+     * The rows are summed in the same order as in evaluate, so both give exactly the same values.
+     */
+    public void evaluateBatch(double[] features, int count, double[] scores) {
+        int n = weights.length;
+        for (int r = 0; r < count; r++) {
+            int offset = r * n;
+            double score = 0;
+            for (int i = FeatureExtractor.NORMAL_PIECES_IN_ROW; i < n; i++) 
+                score = score + features[offset + i] * weights[i];
+            for (int i = 0; i < FeatureExtractor.NORMAL_PIECES_IN_ROW; i++) 
+                score = score + features[offset + i] * weights[i];
+            scores[r] = score;
+        }
+    }
+    
+    
+    
+    /**
+     * Evaluates all rows of batch with BatchEvaluator.getDefault() and writes 
+     * the results into scores. As with evaluateBatch no final states are detected.
+     */
+    public void evaluate(FeatureBatch batch, double[] scores) {
+        BatchEvaluator.getDefault().evaluate(batch, weights, scores);
+    }
+    
+    
+    
+    /**
+     * Evaluates the boards that result from applying each of the moves to b
+     * for player and writes the values into scores, scores[i] being the value of moves.get(i).
+     * The features of all children are extracted first and then evaluated in one batch.
+     * b is left unchanged.
+     */
+    public void evaluateChildren(Board b, MoveBuffer moves, int player, double[] scores) {
+        int count = moves.size();
+        int n = weights.length;
+        if (childFeatures.length < count * n) {
+            childFeatures = new double[count * n];
+            childFinalScores = new double[count];
         }
+        Board b1 = (Board)b.clone();
+        UndoRecord undo = new UndoRecord();
+        for (int i = 0; i < count; i++) {
+            b1.makeMove(moves.get(i), undo);
+            if (b1.boardHasFinalState()) 
+                childFinalScores[i] = b1.getNumberOfPiecesFor(player) > 0 ? 100 : -100;
+            else childFinalScores[i] = 0;
+            extractor.extract(b1, player, childFeatures, i);
+            b1.unmakeMove(undo);
+        }
+        evaluateBatch(childFeatures, count, scores);
+        for (int i = 0; i < count; i++) 
+            if (childFinalScores[i] != 0) scores[i] = childFinalScores[i];
     }
     
     
@@ -132,21 +216,12 @@ public class LinearSelector extends MoveSelector {
     
     
     public int piecesStuck(Board b, int player) {
-        int s = Board.getSize() - 1;
-        return sum(0, s, x -> sum(0, s, y ->  (b.isStuck(player, x, y) ? 1 : 0)));
+        return b.getNumberOfStuckPieces(player);
     }
     
     
     public int piecesThreatened(Board b, int player) {
-        int s = Board.getSize() - 1;
-        return sum(0, s, x -> sum(0, s, y ->  (b.isThreatened(player, x, y) ? 1 : 0)));
-    }
-    
-    
-    private int sum(int from, int to, IntFunction<Integer> f) {
-        int k = 0;
-        for (int i = from; i <= to; i++) k = k + f.apply(i);
-        return k;
+        return b.getNumberOfThreatenedPieces(player);
     }
     
     
@@ -164,147 +239,154 @@ public class LinearSelector extends MoveSelector {
 
 
     public double getFactBasis() {
-        return factBasis;
+        return weights[FeatureExtractor.BASIS];
     }
 
 
     public void setFactBasis(double factBasis) {
-        this.factBasis = factBasis;
+        weights[FeatureExtractor.BASIS] = factBasis;
     }
 
 
     public double getFactNrPiecesSelf() {
-        return factNrPiecesSelf;
+        return weights[FeatureExtractor.PIECES_SELF];
     }
 
 
     public void setFactNrPiecesSelf(double factNrPiecesSelf) {
-        this.factNrPiecesSelf = factNrPiecesSelf;
+        weights[FeatureExtractor.PIECES_SELF] = factNrPiecesSelf;
     }
 
 
     public double getFactNrPiecesOther() {
-        return factNrPiecesOther;
+        return weights[FeatureExtractor.PIECES_OTHER];
     }
 
 
     public void setFactNrPiecesOther(double factNrPiecesOther) {
-        this.factNrPiecesOther = factNrPiecesOther;
+        weights[FeatureExtractor.PIECES_OTHER] = factNrPiecesOther;
     }
 
 
     public double getFactNrKingsSelf() {
-        return factNrKingsSelf;
+        return weights[FeatureExtractor.KINGS_SELF];
     }
 
 
     public void setFactNrKingsSelf(double factNrKingsSelf) {
-        this.factNrKingsSelf = factNrKingsSelf;
+        weights[FeatureExtractor.KINGS_SELF] = factNrKingsSelf;
     }
 
 
     public double getFactNrKingsOther() {
-        return factNrKingsOther;
+        return weights[FeatureExtractor.KINGS_OTHER];
     }
 
 
     public void setFactNrKingsOther(double factNrKingsOther) {
-        this.factNrKingsOther = factNrKingsOther;
+        weights[FeatureExtractor.KINGS_OTHER] = factNrKingsOther;
     }
 
 
     public double getFactNrThreatenedPiecesSelf() {
-        return factNrThreatenedPiecesSelf;
+        return weights[FeatureExtractor.THREATENED_PIECES_SELF];
     }
 
 
     public void setFactNrThreatenedPiecesSelf(double factNrThreatenedPiecesSelf) {
-        this.factNrThreatenedPiecesSelf = factNrThreatenedPiecesSelf;
+        weights[FeatureExtractor.THREATENED_PIECES_SELF] = factNrThreatenedPiecesSelf;
     }
 
 
     public double getFactNrThreatenedPiecesOther() {
-        return factNrThreatenedPiecesOther;
+        return weights[FeatureExtractor.THREATENED_PIECES_OTHER];
     }
 
 
     public void setFactNrThreatenedPiecesOther(double factNrThreatenedPiecesOther) {
-        this.factNrThreatenedPiecesOther = factNrThreatenedPiecesOther;
+        weights[FeatureExtractor.THREATENED_PIECES_OTHER] = factNrThreatenedPiecesOther;
     }
 
     
     
     
     public double getFactNrStuckSelfPieces() {
-        return factNrStuckSelfPieces;
+        return weights[FeatureExtractor.STUCK_PIECES_SELF];
     }
 
 
 
 
     public void setFactNrStuckSelfPieces(double factNrStuckSelfPieces) {
-        this.factNrStuckSelfPieces = factNrStuckSelfPieces;
+        weights[FeatureExtractor.STUCK_PIECES_SELF] = factNrStuckSelfPieces;
     }
 
 
 
 
     public double getFactNrStuckOtherPieces() {
-        return factNrStuckOtherPieces;
+        return weights[FeatureExtractor.STUCK_PIECES_OTHER];
     }
 
 
 
 
     public void setFactNrStuckOtherPieces(double factNrStuckOtherPieces) {
-        this.factNrStuckOtherPieces = factNrStuckOtherPieces;
+        weights[FeatureExtractor.STUCK_PIECES_OTHER] = factNrStuckOtherPieces;
     }
 
 
 
 
     public double getFactNrOfNormalPiecesInRow(int row) {
-        return factNrOfNormalPiecesInRow[row];
+        return weights[FeatureExtractor.NORMAL_PIECES_IN_ROW + row];
     }
     
     public void setFactNrOfNormalPiecesInRow(int row, double v) {
-        factNrOfNormalPiecesInRow[row] = v;
+        weights[FeatureExtractor.NORMAL_PIECES_IN_ROW + row] = v;
+    }
+    
+    
+    /**
+     * Returns the factors in the order of the features of a FeatureExtractor.
+     * The array is not copied, changes to it change the selector.
+     */
+    public double[] getWeights() {
+        return weights;
+    }
+    
+    
+    public void setWeights(double[] weights) {
+        if (weights.length != this.weights.length) 
+            throw new RuntimeException("Expected " + this.weights.length + " weights, got " + weights.length);
+        System.arraycopy(weights, 0, this.weights, 0, weights.length);
     }
     
     
     @Override
     public String toString() {
         String s = "";
-        for (int i = 0; i < factNrOfNormalPiecesInRow.length; i++) s = s + factNrOfNormalPiecesInRow[i] + ", ";
+        for (int i = 0; i < (weights.length - FeatureExtractor.NORMAL_PIECES_IN_ROW); i++) s = s + getFactNrOfNormalPiecesInRow(i) + ", ";
         s = s.substring(0, s.length() - 2);
-        return  factBasis + 
-                ", " + factNrPiecesSelf + ", " + factNrPiecesOther + 
-                ", " + factNrKingsSelf + ", " + factNrKingsOther + 
-                ", " + factNrThreatenedPiecesSelf + ", " +  factNrThreatenedPiecesOther + ", " + s + "\n" +
-                ", " + factNrStuckSelfPieces + ", " +  factNrStuckOtherPieces + ", " + s + "\n" +
-                "Basis: " + factBasis + 
-                ", self pieces: " + factNrPiecesSelf + ", other pieces: " + factNrPiecesOther + 
-                ", self kings: " + factNrKingsSelf + ", other kings: " + factNrKingsOther + 
-                ", self threatened: " + factNrThreatenedPiecesSelf + ", other threatened: " +  factNrThreatenedPiecesOther + 
-                ", self stuck: " + factNrStuckSelfPieces + ", other stuck: " +  factNrStuckOtherPieces + 
+        return  getFactBasis() + 
+                ", " + getFactNrPiecesSelf() + ", " + getFactNrPiecesOther() + 
+                ", " + getFactNrKingsSelf() + ", " + getFactNrKingsOther() + 
+                ", " + getFactNrThreatenedPiecesSelf() + ", " +  getFactNrThreatenedPiecesOther() + ", " + s + "\n" +
+                ", " + getFactNrStuckSelfPieces() + ", " +  getFactNrStuckOtherPieces() + ", " + s + "\n" +
+                "Basis: " + getFactBasis() + 
+                ", self pieces: " + getFactNrPiecesSelf() + ", other pieces: " + getFactNrPiecesOther() + 
+                ", self kings: " + getFactNrKingsSelf() + ", other kings: " + getFactNrKingsOther() + 
+                ", self threatened: " + getFactNrThreatenedPiecesSelf() + ", other threatened: " +  getFactNrThreatenedPiecesOther() + 
+                ", self stuck: " + getFactNrStuckSelfPieces() + ", other stuck: " +  getFactNrStuckOtherPieces() + 
                 ", rowfacts: " + s;
     }
     
     
     @Override
     public Object clone() {
-        LinearSelector copy = new LinearSelector(factNrOfNormalPiecesInRow.length + 1);
-        copy.factBasis = factBasis;
-        copy.factNrKingsOther = factNrKingsOther;
-        copy.factNrKingsSelf = factNrKingsSelf;
-        copy.factNrPiecesOther = factNrPiecesOther;
-        copy.factNrPiecesSelf = factNrPiecesSelf;
-        copy.factNrStuckOtherPieces = factNrStuckOtherPieces;
-        copy.factNrStuckSelfPieces = factNrStuckSelfPieces;
-        copy.factNrThreatenedPiecesOther = factNrThreatenedPiecesOther;
-        copy.factNrThreatenedPiecesSelf = factNrThreatenedPiecesSelf;
-        copy.factNrOfNormalPiecesInRow = new double[factNrOfNormalPiecesInRow.length];
-        System.arraycopy(factNrOfNormalPiecesInRow, 0, copy.factNrOfNormalPiecesInRow, 0, factNrOfNormalPiecesInRow.length);
+        LinearSelector copy = new LinearSelector(weights.length - FeatureExtractor.NORMAL_PIECES_IN_ROW + 1);
+        System.arraycopy(weights, 0, copy.weights, 0, weights.length);
+        copy.random = random.split();
         return copy;
     }
     
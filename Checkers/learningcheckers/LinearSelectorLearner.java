@@ -1,11 +1,55 @@
 package learningcheckers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LinearSelectorLearner {
     
+    // nach so vielen Trainingsspielen wird der gelernte Selektor gegen base getestet
+    private static final int ROUNDS_PER_TEST = 10;
+    // Testspiele ohne sequentiellen Test, und höchstens so viele mit sequentiellem Test
+    private static final int GAMES_PER_TEST = 100;
+    private static final int MAX_GAMES_PER_SEQUENTIAL_TEST = 1000;
+    // learnUnsupervised testet nach so vielen Selbstspielen
+    private static final int SELF_PLAY_GAMES_PER_TEST = 200;
     
-    public LinearSelectorLearner() {}
+    private MatchRunner matchRunner;
+    private SequentialProbabilityRatioTest sequentialTest;
+    private long seed;
+    private double ridge;
+    // die Normalgleichungen aller bisher in learnSupervised gesehenen Spielstände
+    private NormalEquations supervisedData;
+    private double tdLambda;
+    private double learningRate;
+    // die neuesten Gewichte für die Selbstspiel-Threads; ein veröffentlichtes Array 
+    // wird nicht mehr verändert, sondern durch ein neues ersetzt
+    private volatile double[] publishedWeights;
+    
+    
+    public LinearSelectorLearner() {
+        this(new MatchRunner(Runtime.getRuntime().availableProcessors()));
+    }
+    
+    
+    /**
+     * @param matchRunner Führt die Testspiele durch.
+     */
+    public LinearSelectorLearner(MatchRunner matchRunner) {
+        this.matchRunner = matchRunner;
+        sequentialTest = new SequentialProbabilityRatioTest(0, 10, 0.05, 0.05);
+        seed = 0;
+        ridge = 1e-3;
+        tdLambda = 0.7;
+        learningRate = 1e-5;
+    }
     
     
     
@@ -18,7 +62,11 @@ public class LinearSelectorLearner {
      * @param rounds Anzahl der Testspiele die maximal durchgeführt werden.
      * @param goalFraction Der Lernalgorithmus bricht ab, wenn der gelernte 
      *                     Selektor mindestens diesen Bruchteil an Testspielen
-     *                     gegen den gegebenen base-Selektor gewinnt. 
+     *                     gegen den gegebenen base-Selektor gewinnt. Unentschieden
+     *                     endende Testspiele werden dabei nicht mitgezählt. 
+     *                     Mit sequentiellem Test (siehe setSequentialTest) muss 
+     *                     dieser zusätzlich entscheiden, dass der gelernte Selektor
+     *                     stärker ist. 
      * @param base Der Selektor mit dessen Parametern der Lernvorgang beginnt
      *             und der als Vergleich zum Ermitteln des Lernerfolgs herangezogen wird.
      * @param teacher Der Selektor von dem gelernt werden soll.
@@ -26,17 +74,73 @@ public class LinearSelectorLearner {
      */
     public LinearSelector learnSupervised(int rounds, double goalFraction, LinearSelector base, LinearSelector teacher) {
         LinearSelector selector = (LinearSelector)base.clone();
-        //TODO: Bitte Implementieren, also selector verbessern lassen
-        return null;
+        LinearSelector teacherCopy = (LinearSelector)teacher.clone();
+        supervisedData = new NormalEquations(selector.getWeights().length);
+        SplittableRandom rand = new SplittableRandom(seed);
+        for (int round = 0; round < rounds; round++) {
+            // der Schüler spielt gegen den teacher, abwechselnd mit beiden Farben
+            selector.setSeed(rand.nextLong());
+            teacherCopy.setSeed(rand.nextLong());
+            Game g = round % 2 == 0 ? new Game(selector, teacherCopy, false) : new Game(teacherCopy, selector, false);
+            g.run(false);
+            trainSupervised(selector, g.getHistory(), teacher);
+            if ((round + 1) % ROUNDS_PER_TEST == 0 || round == rounds - 1) 
+                if (reachedGoal(base, selector, goalFraction)) break;
+        }
+        return selector;
     }
     
     
     /**
      * Lernt aus dem Spielverlauf, der durch li gegeben ist.
      * Verbessert den gegebenen Selector s, wobei s sich an den Bewertungen von teacher orientiert.
+     * 
+     * Die Merkmale (siehe FeatureExtractor) jedes Spielstands werden aus Sicht beider Spieler 
+     * mit der Bewertung von teacher als Zielwert in die Normalgleichungen X^T X und X^T y 
+     * aufsummiert, parallel auf den Threads des matchRunner mit je eigenen Summen, die am Ende 
+     * zusammengeführt werden. Die Summen enthalten alle seit dem Start von learnSupervised 
+     * gesehenen Spielstände, der Speicherbedarf hängt aber nicht von deren Anzahl ab.
+     * Anschließend werden die Gewichte von s durch Ridge-Regression (siehe setRidge) neu bestimmt.
+     * Endstellungen werden übersprungen, da evaluate sie nicht über die Merkmale bewertet.
      */
     private void trainSupervised(LinearSelector s, List<Board> li, LinearSelector teacher) {
-        //TODO: Bitte Implementieren!
+        int numberOfFeatures = s.getWeights().length;
+        if (supervisedData == null || supervisedData.getNumberOfFeatures() != numberOfFeatures) 
+            supervisedData = new NormalEquations(numberOfFeatures);
+        int workers = Math.max(1, Math.min(matchRunner.getNumberOfWorkers(), li.size()));
+        NormalEquations[] partial = new NormalEquations[workers];
+        List<Future<?>> running = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            int worker = w;
+            NormalEquations sums = new NormalEquations(numberOfFeatures);
+            LinearSelector teacherCopy = (LinearSelector)teacher.clone();
+            partial[w] = sums;
+            running.add(matchRunner.getExecutor().submit(() -> {
+                FeatureExtractor extractor = new FeatureExtractor(numberOfFeatures - FeatureExtractor.NORMAL_PIECES_IN_ROW + 1);
+                double[] features = new double[numberOfFeatures];
+                for (int i = worker; i < li.size(); i += workers) {
+                    Board b = li.get(i);
+                    if (b.boardHasFinalState()) continue;
+                    int player = Board.getStartPlayer();
+                    for (int k = 0; k < 2; k++, player = b.getOtherPlayer(player)) {
+                        extractor.extract(b, player, features, 0);
+                        sums.add(features, 0, teacherCopy.evaluate(b, player));
+                    }
+                }
+            }));
+        }
+        for (int w = 0; w < workers; w++) {
+            try {
+                running.get(w).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while learning from the game.", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Learning from the game failed.", e.getCause());
+            }
+            supervisedData.merge(partial[w]);
+        }
+        if (supervisedData.getNumberOfSamples() > 0) s.setWeights(supervisedData.solve(ridge));
     }
     
     
@@ -48,51 +152,241 @@ public class LinearSelectorLearner {
      * @param rounds Anzahl der Testspiele die maximal durchgeführt werden.
      * @param goalFraction Der Lernalgorithmus bricht ab, wenn der gelernte 
      *                     Selektor mindestens diesen Bruchteil an Testspielen
-     *                     gegen den gegebenen base-Selektor gewinnt. 
+     *                     gegen den gegebenen base-Selektor gewinnt. Unentschieden
+     *                     endende Testspiele werden dabei nicht mitgezählt. 
+     *                     Mit sequentiellem Test (siehe setSequentialTest) muss 
+     *                     dieser zusätzlich entscheiden, dass der gelernte Selektor
+     *                     stärker ist. 
      * @param base Der Selektor mit dessen Parametern der Lernvorgang beginnt
      *             und der als Vergleich zum Ermitteln des Lernerfolgs herangezogen wird.
      * @return Den gelernten Selektor.
      */
     public LinearSelector learnUnsupervised(int rounds, double goalFraction, LinearSelector base) {
-        //TODO: Bitte Implementieren!
-        return null;
+        LinearSelector selector = (LinearSelector)base.clone();
+        for (int played = 0; played < rounds; ) {
+            int games = Math.min(SELF_PLAY_GAMES_PER_TEST, rounds - played);
+            selfPlay(selector, games, seed + played);
+            played += games;
+            if (reachedGoal(base, selector, goalFraction)) break;
+        }
+        return selector;
     }
     
     
     /**
-     * Lernt aus dem Spielverlauf, der durch li gegeben ist.
-     * Verbessert den gegebenen Selector s. 
+     * Lernt mit TD(lambda) aus numberOfGames Selbstspielen von s.
+     * Auf jedem Thread des matchRunner spielt s gegen sich selbst, jeweils mit den zuletzt 
+     * veröffentlichten Gewichten, und legt die Merkmale der Spielstände mit dem Ergebnis 
+     * als TrainingGame in eine beschränkte Warteschlange. Der aufrufende Thread lernt als einziger 
+     * aus den Spielen und veröffentlicht nach jedem Spiel eine Kopie der Gewichte über die 
+     * volatile Referenz publishedWeights, so dass die Spieler ohne Sperren die neuen Gewichte sehen.
+     * Am Ende werden die gelernten Gewichte in s geschrieben.
      */
-    private void trainUnsupervised(LinearSelector s, List<Board> li) {
-        //TODO: Bitte Implementieren!
+    private void selfPlay(LinearSelector s, int numberOfGames, long gameSeed) {
+        double[] weights = s.getWeights().clone();
+        publishedWeights = weights.clone();
+        int workers = matchRunner.getNumberOfWorkers();
+        int boardSize = weights.length - FeatureExtractor.NORMAL_PIECES_IN_ROW + 1;
+        BlockingQueue<TrainingGame> queue = new ArrayBlockingQueue<>(2 * workers);
+        AtomicInteger nextGame = new AtomicInteger();
+        List<Future<?>> running = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            LinearSelector first = (LinearSelector)s.clone();
+            LinearSelector second = (LinearSelector)s.clone();
+            running.add(matchRunner.getExecutor().submit(() -> {
+                FeatureExtractor extractor = new FeatureExtractor(boardSize);
+                for (int game = nextGame.getAndIncrement(); game < numberOfGames; game = nextGame.getAndIncrement()) {
+                    double[] current = publishedWeights;
+                    first.setWeights(current);
+                    second.setWeights(current);
+                    SplittableRandom rand = new SplittableRandom(gameSeed + game);
+                    first.setSeed(rand.nextLong());
+                    second.setSeed(rand.nextLong());
+                    Game g = new Game(first, second, false);
+                    int winner = g.run(false);
+                    try {
+                        queue.put(TrainingGame.create(g.getHistory(), winner, extractor));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }));
+        }
+        try {
+            for (int learned = 0; learned < numberOfGames; ) {
+                TrainingGame game = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (game == null) {
+                    checkSelfPlay(running);
+                    continue;
+                }
+                trainTemporalDifference(weights, game);
+                publishedWeights = weights.clone();
+                learned++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while learning from the self-play games.", e);
+        } finally {
+            // stoppt die Spieler, falls das Lernen abgebrochen wurde
+            for (Future<?> f : running) f.cancel(true);
+        }
+        s.setWeights(weights);
+    }
+    
+    
+    
+    private void checkSelfPlay(List<Future<?>> running) {
+        for (Future<?> f : running) {
+            if (!f.isDone()) continue;
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("A self-play game failed.", e.getCause());
+            }
+        }
+    }
+    
+    
+    /**
+     * Lernt aus dem Spielverlauf, der durch li gegeben ist, z.B. aus einem gespeicherten 
+     * Spiel (siehe GameRecord.getHistory()). Verbessert den gegebenen Selector s durch einen 
+     * TD(lambda)-Durchlauf. Der Sieger wird wie in Game.run aus dem letzten Spielstand bestimmt.
+     */
+    public void trainUnsupervised(LinearSelector s, List<Board> li) {
+        Board last = li.get(li.size() - 1);
+        int winner = -1;
+        MoveBuffer moves = new MoveBuffer();
+        if (last.boardHasFinalState()) winner = last.getOtherPlayer(last.getNextPlayer());
+        else if (last.getAllLegalMoves(last.getNextPlayer(), moves) == 0 
+                && last.getAllLegalMoves(last.getOtherPlayer(last.getNextPlayer()), moves) > 0) 
+            winner = last.getOtherPlayer(last.getNextPlayer());
+        double[] weights = s.getWeights();
+        FeatureExtractor extractor = new FeatureExtractor(weights.length - FeatureExtractor.NORMAL_PIECES_IN_ROW + 1);
+        trainTemporalDifference(weights, TrainingGame.create(li, winner, extractor));
+    }
+    
+    
+    
+    /**
+     * Ein TD(lambda)-Durchlauf über die Spielstände von game, getrennt aus Sicht beider Spieler:
+     * Der Wert jedes Spielstands wird an den Wert des folgenden Spielstands angeglichen,
+     * der Wert des letzten an das Ergebnis des Spiels. Die Gewichte werden nach jedem 
+     * Spielstand angepasst, mit Eligibility Traces, die mit tdLambda abklingen.
+     */
+    private void trainTemporalDifference(double[] weights, TrainingGame game) {
+        int n = game.getNumberOfFeatures();
+        int count = game.getNumberOfBoards();
+        double[] features = game.getFeatures();
+        double[] trace = new double[n];
+        for (int perspective = 0; perspective < 2; perspective++) {
+            Arrays.fill(trace, 0);
+            for (int t = 0; t < count; t++) {
+                int offset = game.getRow(perspective, t) * n;
+                double value = dot(weights, features, offset);
+                double target = t + 1 < count ? dot(weights, features, game.getRow(perspective, t + 1) * n) : game.getOutcome(perspective);
+                double delta = target - value;
+                for (int i = 0; i < n; i++) {
+                    trace[i] = tdLambda * trace[i] + features[offset + i];
+                    weights[i] += learningRate * delta * trace[i];
+                }
+            }
+        }
+    }
+    
+    
+    
+    private static double dot(double[] weights, double[] features, int offset) {
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) sum += weights[i] * features[offset + i];
+        return sum;
     }
     
     
     /**
      * Führt numberOfGames Damespiele durch, wobei ein Spieler
      * seine Züge mittels base-Selektor ausführt und der andere
-     * spieler mittels learned-Selector.
-     * @return Den Bruchteil der Spiele, der von learned gewonnen wurde.
+     * spieler mittels learned-Selector. Die Farben wechseln von Spiel zu Spiel,
+     * die Spiele laufen parallel auf den Threads des matchRunner.
+     * @return Den Bruchteil der Spiele, die nicht unentschieden enden, der von learned gewonnen wurde.
      */
     private double fractionOfGamesWon(LinearSelector base, LinearSelector learned, int numberOfGames) {
-        // Gewonnen Spiele von learned
-        int gamesWonByLearned = 0;
+        MatchResult result = matchRunner.play(learned, base, numberOfGames, seed);
+        return result.getFractionOfDecisiveGamesWon();
+    }
 
-        // Spiele die nicht Unentschieden enden
-        int gamesNotEven = 0;
 
-        //Anzahl der gespielten Spiele
-        int numberOfGamesPlayed = 0;
 
-        while(numberOfGamesPlayed <= numberOfGames) {
-            Game game = new Game(base, learned, false);
-            int numberOfWinner = game.run(false);
-            if(numberOfWinner == 1) gamesWonByLearned++;
-            else if (numberOfWinner != -1) gamesNotEven++;
-            numberOfGamesPlayed++;
-        }
+    /**
+     * Testet learned gegen base: Mit sequentiellem Test bricht die Testserie ab, sobald der Test 
+     * entschieden hat, und das Ziel ist erreicht, wenn learned als stärker gilt und mindestens 
+     * goalFraction der nicht unentschieden endenden Spiele gewonnen hat. Ohne sequentiellen Test 
+     * werden GAMES_PER_TEST Spiele gespielt und nur goalFraction geprüft.
+     */
+    private boolean reachedGoal(LinearSelector base, LinearSelector learned, double goalFraction) {
+        if (sequentialTest == null) return fractionOfGamesWon(base, learned, GAMES_PER_TEST) >= goalFraction;
+        SequentialMatchResult result = testStronger(base, learned, MAX_GAMES_PER_SEQUENTIAL_TEST);
+        return result.getDecision() == SequentialProbabilityRatioTest.Decision.H1_ACCEPTED 
+                && result.getFractionOfDecisiveGamesWon() >= goalFraction;
+    }
+    
+    
+    
+    /**
+     * Führt höchstens maxNumberOfGames Testspiele zwischen base und learned durch
+     * und bricht ab, sobald der sequentielle Test (siehe setSequentialTest) entschieden hat,
+     * ob learned stärker ist als base.
+     * @return Das Ergebnis aus Sicht von learned mit der Entscheidung des Tests,
+     *         getNumberOfGames() gibt die Anzahl der gespielten Spiele an.
+     */
+    public SequentialMatchResult testStronger(LinearSelector base, LinearSelector learned, int maxNumberOfGames) {
+        if (sequentialTest == null) throw new RuntimeException("No sequential test set.");
+        return matchRunner.play(learned, base, maxNumberOfGames, seed, sequentialTest);
+    }
+    
+    
+    
+    /**
+     * Setzt den Test, mit dem testStronger und die Lernverfahren entscheiden, ob der gelernte 
+     * Selektor stärker ist. Voreingestellt ist H0: 0 Elo, H1: 10 Elo mit alpha = beta = 0.05.
+     * Mit null testen die Lernverfahren mit einer festen Anzahl von Spielen, testStronger
+     * kann dann nicht mehr verwendet werden.
+     */
+    public void setSequentialTest(SequentialProbabilityRatioTest sequentialTest) {
+        this.sequentialTest = sequentialTest;
+    }
+    
+    
+    
+    /**
+     * Setzt den Startwert für die Zufallszahlen der Testspiele, 
+     * mit gleichem Startwert liefern die Testspiele die gleichen Ergebnisse.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+    
+    
 
-        return gamesWonByLearned/gamesNotEven;
+    /**
+     * Setzt die Stärke der Ridge-Regularisierung von trainSupervised: zu den Normalgleichungen 
+     * wird ridge mal die Anzahl der Spielstände auf die Diagonale addiert, außer beim Basiswert. 
+     * Voreingestellt ist 0.001.
+     */
+    public void setRidge(double ridge) {
+        this.ridge = ridge;
+    }
+    
+    
+
+    /**
+     * Setzt lambda und die Lernrate von TD(lambda) für learnUnsupervised und trainUnsupervised.
+     * Voreingestellt sind lambda = 0.7 und die Lernrate 0.00001.
+     */
+    public void setTemporalDifference(double lambda, double learningRate) {
+        this.tdLambda = lambda;
+        this.learningRate = learningRate;
     }
     
     
@@ -105,6 +399,7 @@ public class LinearSelectorLearner {
         LinearSelector base = new LinearSelector(8, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0);
 
         System.out.println(learner.fractionOfGamesWon(base, human, 100));
+        System.out.println(learner.testStronger(base, human, 1000));
     }
 }
 
@@ -0,0 +1,84 @@
+package learningcheckers;
+
+/**
+ * The outcome of a match between two selectors, seen from the first selector.
+ */
+public class MatchResult {
+    
+    private int wins;
+    private int losses;
+    private int draws;
+    
+    
+    
+    public MatchResult(int wins, int losses, int draws) {
+        this.wins = wins;
+        this.losses = losses;
+        this.draws = draws;
+    }
+    
+    
+    
+    public int getWins() {
+        return wins;
+    }
+    
+    
+    
+    public int getLosses() {
+        return losses;
+    }
+    
+    
+    
+    public int getDraws() {
+        return draws;
+    }
+    
+    
+    
+    public int getNumberOfGames() {
+        return wins + losses + draws;
+    }
+    
+    
+    
+    /**
+     * Returns the fraction of the games won by the first selector.
+     */
+    public double getFractionOfGamesWon() {
+        if (getNumberOfGames() == 0) return 0;
+        return (double)wins / getNumberOfGames();
+    }
+    
+    
+    
+    /**
+     * Returns the fraction of the games that did not end in a draw which were won by the first selector,
+     * 0 if all games were draws.
+     */
+    public double getFractionOfDecisiveGamesWon() {
+        if (wins + losses == 0) return 0;
+        return (double)wins / (wins + losses);
+    }
+    
+    
+    
+    /**
+     * Returns the score of the first selector, counting a win as 1 and a draw as 1/2, 
+     * divided by the number of games.
+     */
+    public double getScore() {
+        if (getNumberOfGames() == 0) return 0;
+        return (wins + 0.5 * draws) / getNumberOfGames();
+    }
+    
+    
+    
+    @Override
+    public String toString() {
+        return "wins: " + wins + ", losses: " + losses + ", draws: " + draws;
+    }
+    
+    
+}
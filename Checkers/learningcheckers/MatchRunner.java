@@ -0,0 +1,231 @@
+package learningcheckers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays matches between two selectors on several threads.
+ * 
+ * Every worker plays with its own clones of the selectors (see MoveSelector.clone), 
+ * worker w plays the games w, w + numberOfWorkers, w + 2*numberOfWorkers, ... in this order.
+ * Matches can also be stopped early by a SequentialProbabilityRatioTest.
+ * The first selector is player 1 in the even games and player 2 in the odd ones.
+ * Before each game both selectors are seeded with values derived from the seed of the 
+ * match and the number of the game, so a match with the same seed and the same number 
+ * of workers gives the same result (as long as the selectors do not depend on time limits).
+ */
+public class MatchRunner {
+    
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    
+    private ExecutorService executor;
+    private int numberOfWorkers;
+    // if set, every game is written to the recorder
+    private GameRecordWriter recorder;
+    private int firstSelectorId;
+    private int secondSelectorId;
+    
+    
+    
+    /**
+     * Creates a runner with its own pool of numberOfThreads threads.
+     */
+    public MatchRunner(int numberOfThreads) {
+        this(Executors.newFixedThreadPool(numberOfThreads, r -> {
+            Thread t = new Thread(r, "MatchRunner worker");
+            t.setDaemon(true);
+            return t;
+        }), numberOfThreads);
+    }
+    
+    
+    
+    /**
+     * Creates a runner that plays the games of a match in numberOfWorkers tasks on the given executor,
+     * for example one that starts a virtual thread per task.
+     */
+    public MatchRunner(ExecutorService executor, int numberOfWorkers) {
+        if (numberOfWorkers < 1) throw new RuntimeException("At least one worker is needed: " + numberOfWorkers);
+        this.executor = executor;
+        this.numberOfWorkers = numberOfWorkers;
+    }
+    
+    
+    
+    /**
+     * Plays numberOfGames games between first and second and returns the result seen from first.
+     * The given selectors are not used for playing, only cloned.
+     */
+    public MatchResult play(MoveSelector first, MoveSelector second, int numberOfGames, long seed) {
+        return play(first, second, 0, numberOfGames, seed);
+    }
+    
+    
+    
+    /**
+     * Plays games between first and second in batches of two games per worker
+     * until test accepts one of its hypotheses or maxNumberOfGames games are played.
+     * Game i is seeded the same way as in play(first, second, numberOfGames, seed), 
+     * so for selectors that keep no state between games the first games of both matches are the same.
+     */
+    public SequentialMatchResult play(MoveSelector first, MoveSelector second, int maxNumberOfGames, long seed, 
+            SequentialProbabilityRatioTest test) {
+        int batchSize = 2 * numberOfWorkers;
+        int wins = 0;
+        int losses = 0;
+        int draws = 0;
+        MatchResult result = new MatchResult(0, 0, 0);
+        SequentialProbabilityRatioTest.Decision decision = SequentialProbabilityRatioTest.Decision.UNDECIDED;
+        for (int fromGame = 0; fromGame < maxNumberOfGames && decision == SequentialProbabilityRatioTest.Decision.UNDECIDED; fromGame += batchSize) {
+            MatchResult batch = play(first, second, fromGame, Math.min(fromGame + batchSize, maxNumberOfGames), seed);
+            wins += batch.getWins();
+            losses += batch.getLosses();
+            draws += batch.getDraws();
+            result = new MatchResult(wins, losses, draws);
+            decision = test.getDecision(result);
+        }
+        return new SequentialMatchResult(result, decision, test.getLogLikelihoodRatio(result));
+    }
+    
+    
+    
+    /**
+     * Plays the games fromGame (inclusive) to toGame (exclusive).
+     */
+    private MatchResult play(MoveSelector first, MoveSelector second, int fromGame, int toGame, long seed) {
+        AtomicInteger wins = new AtomicInteger();
+        AtomicInteger losses = new AtomicInteger();
+        AtomicInteger draws = new AtomicInteger();
+        int workers = Math.max(1, Math.min(numberOfWorkers, toGame - fromGame));
+        List<Future<?>> running = new ArrayList<>(workers);
+        // the copies are closed after the games, so selectors with threads of their own do not leak them
+        List<MoveSelector> copies = new ArrayList<>(2 * workers);
+        // set when a game failed, the other workers then stop after their current game
+        AtomicBoolean stop = new AtomicBoolean();
+        try {
+            for (int w = 0; w < workers; w++) {
+                int worker = w;
+                MoveSelector firstCopy = (MoveSelector)first.clone();
+                copies.add(firstCopy);
+                MoveSelector secondCopy = (MoveSelector)second.clone();
+                copies.add(secondCopy);
+                running.add(executor.submit(() -> {
+                    for (int game = fromGame + worker; game < toGame && !stop.get(); game += workers) {
+                        int winner = playGame(firstCopy, secondCopy, game, seed);
+                        if (winner == 1) wins.incrementAndGet();
+                        else if (winner == 2) losses.incrementAndGet();
+                        else draws.incrementAndGet();
+                    }
+                }));
+            }
+        } catch (RuntimeException e) {
+            stop.set(true);
+            throw e;
+        } finally {
+            // a copy may only be closed when no worker plays with it any more
+            try {
+                awaitAll(running, stop);
+            } finally {
+                for (MoveSelector copy : copies) copy.close();
+            }
+        }
+        return new MatchResult(wins.get(), losses.get(), draws.get());
+    }
+    
+    
+    
+    /**
+     * Waits until all tasks are done, also when one of them failed or the waiting thread 
+     * is interrupted. After the first failure stop is set, so the other tasks end after 
+     * their current game. Throws the first failure once all tasks are done.
+     */
+    private static void awaitAll(List<Future<?>> running, AtomicBoolean stop) {
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (Future<?> f : running) {
+            while (true) {
+                try {
+                    f.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    stop.set(true);
+                    if (failure == null) failure = new RuntimeException("Interrupted while waiting for the games.", e);
+                } catch (ExecutionException e) {
+                    stop.set(true);
+                    if (failure == null) failure = new RuntimeException("A game of the match failed.", e.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw failure;
+    }
+    
+    
+    
+    /**
+     * Plays the game with the given number and returns 1 if first won, 2 if second won
+     * and -1 for a draw.
+     */
+    private int playGame(MoveSelector first, MoveSelector second, int game, long seed) {
+        SplittableRandom rand = new SplittableRandom(seed + game * GOLDEN_GAMMA);
+        first.setSeed(rand.nextLong());
+        second.setSeed(rand.nextLong());
+        boolean firstStarts = game % 2 == 0;
+        Game g = firstStarts ? new Game(first, second, false) : new Game(second, first, false);
+        int winner = g.run(false);
+        if (recorder != null) 
+            recorder.write(new GameRecord(game, g.getHistory().get(0), g.getMoves().toArray(), winner, 
+                    firstStarts ? firstSelectorId : secondSelectorId, firstStarts ? secondSelectorId : firstSelectorId));
+        if (winner == -1) return -1;
+        return (winner == Board.getStartPlayer()) == firstStarts ? 1 : 2;
+    }
+    
+    
+    
+    /**
+     * Writes all games of the following matches to recorder, the selectors are stored 
+     * with the given ids (the first selector of a match gets firstSelectorId).
+     * A recorder of null stops the recording.
+     */
+    public void setRecorder(GameRecordWriter recorder, int firstSelectorId, int secondSelectorId) {
+        this.recorder = recorder;
+        this.firstSelectorId = firstSelectorId;
+        this.secondSelectorId = secondSelectorId;
+    }
+    
+    
+    
+    public int getNumberOfWorkers() {
+        return numberOfWorkers;
+    }
+    
+    
+    
+    /**
+     * Returns the executor the games run on, so that other work of a match,
+     * such as learning from its games, can use the same threads.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+    
+    
+    
+    /**
+     * Stops the threads of the runner. The runner can not be used any more afterwards.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    
+}
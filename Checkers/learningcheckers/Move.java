@@ -2,6 +2,19 @@ package learningcheckers;
 
 public class Move {
     
+    // Moves can also be packed into a single int (see pack), which is what
+    // the allocation free move generation of Board works with:
+    // bits 0-4 source square, bits 5-9 target square, bits 10-14 square of the
+    // captured piece, bit 15 capture flag, bit 16 promotion flag.
+    // Squares are the indices of the black fields as used by Board.getSquare.
+    public static final int NO_MOVE = -1;
+    private static final int SQUARE_BITS = 5;
+    private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+    private static final int TO_SHIFT = SQUARE_BITS;
+    private static final int CAPTURED_SHIFT = 2 * SQUARE_BITS;
+    private static final int CAPTURE_FLAG = 1 << (3 * SQUARE_BITS);
+    private static final int PROMOTION_FLAG = CAPTURE_FLAG << 1;
+    
     private int fromX, fromY, toX, toY;
     
     
@@ -38,7 +51,70 @@ public class Move {
     
     
     public long getMoveHash() {
-        return Board.getPositionHash(fromX, fromY) * Board.getPositionHash(toX, toY);
+        return Long.rotateLeft(Board.getPositionHash(fromX, fromY), 1) ^ Board.getPositionHash(toX, toY);
+    }
+    
+    
+    /**
+     * Packs a move into an int. captured is the square of the captured piece or -1.
+     */
+    public static int pack(int from, int to, int captured, boolean promotion) {
+        int packed = from | (to << TO_SHIFT);
+        if (captured >= 0) packed |= (captured << CAPTURED_SHIFT) | CAPTURE_FLAG;
+        if (promotion) packed |= PROMOTION_FLAG;
+        return packed;
+    }
+    
+    
+    public static int getFrom(int packed) {
+        return packed & SQUARE_MASK;
+    }
+    
+    
+    public static int getTo(int packed) {
+        return (packed >>> TO_SHIFT) & SQUARE_MASK;
+    }
+    
+    
+    /**
+     * Returns the square of the piece captured by the packed move or -1.
+     */
+    public static int getCaptured(int packed) {
+        if ((packed & CAPTURE_FLAG) == 0) return -1;
+        return (packed >>> CAPTURED_SHIFT) & SQUARE_MASK;
+    }
+    
+    
+    public static boolean isCapture(int packed) {
+        return (packed & CAPTURE_FLAG) != 0;
+    }
+    
+    
+    public static boolean isPromotion(int packed) {
+        return (packed & PROMOTION_FLAG) != 0;
+    }
+    
+    
+    /**
+     * Same as getMoveHash for the unpacked move.
+     */
+    public static long getMoveHash(int packed) {
+        int from = getFrom(packed);
+        int to = getTo(packed);
+        return Long.rotateLeft(Board.getPositionHash(Board.getSquareX(from), Board.getSquareY(from)), 1) ^ 
+                Board.getPositionHash(Board.getSquareX(to), Board.getSquareY(to));
+    }
+    
+    
+    public static Move unpack(int packed) {
+        int from = getFrom(packed);
+        int to = getTo(packed);
+        return new Move(Board.getSquareX(from), Board.getSquareY(from), Board.getSquareX(to), Board.getSquareY(to));
+    }
+    
+    
+    public static String toString(int packed) {
+        return unpack(packed).toString();
     }
     
     
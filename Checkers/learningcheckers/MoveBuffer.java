@@ -0,0 +1,103 @@
+package learningcheckers;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of packed moves (see Move.pack).
+ * Board.getAllLegalMoves(int, MoveBuffer) fills it without allocating anything,
+ * so one buffer per search depth or per game is enough.
+ */
+public class MoveBuffer {
+    
+    private int[] moves;
+    private int size;
+    
+    
+    
+    public MoveBuffer() {
+        this(Board.MAX_NUMBER_OF_MOVES);
+    }
+    
+    
+    
+    public MoveBuffer(int capacity) {
+        moves = new int[capacity];
+        size = 0;
+    }
+    
+    
+    
+    public void clear() {
+        size = 0;
+    }
+    
+    
+    
+    public void add(int packedMove) {
+        if (size == moves.length) {
+            int[] larger = new int[Math.max(2 * moves.length, 8)];
+            System.arraycopy(moves, 0, larger, 0, size);
+            moves = larger;
+        }
+        moves[size++] = packedMove;
+    }
+    
+    
+    
+    public int get(int i) {
+        return moves[i];
+    }
+    
+    
+    
+    public void set(int i, int packedMove) {
+        moves[i] = packedMove;
+    }
+    
+    
+    
+    public int size() {
+        return size;
+    }
+    
+    
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    
+    
+    public int indexOf(int packedMove) {
+        for (int i = 0; i < size; i++) if (moves[i] == packedMove) return i;
+        return -1;
+    }
+    
+    
+    
+    /**
+     * Gives direct access to the packed moves, valid are the first size() entries.
+     */
+    public int[] getMoves() {
+        return moves;
+    }
+    
+    
+    
+    /**
+     * Returns a copy of the first size() packed moves.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(moves, size);
+    }
+    
+    
+    
+    public String toString() {
+        String s = "[";
+        for (int i = 0; i < size; i++) s = s + (i > 0 ? ", " : "") + Move.toString(moves[i]);
+        return s + "]";
+    }
+    
+    
+}
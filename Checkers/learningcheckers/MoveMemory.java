@@ -0,0 +1,124 @@
+package learningcheckers;
+
+import java.util.Arrays;
+
+/**
+ * Set of (board, move) pairs, used by MoveSelector to remember the moves done in a game.
+ * Open addressing with linear probing on primitive arrays, so nothing is boxed, 
+ * and clear() empties the set in place.
+ * 
+ * By default a pair is stored as the single key board hash ^ move hash, as MoveSelector 
+ * always did. In exact mode the board hash and the packed move are stored separately, 
+ * so two different moves on the same board can never be confused.
+ */
+public class MoveMemory {
+    
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+    private static final int EMPTY = Move.NO_MOVE;
+    
+    private boolean exact;
+    private long[] keys;
+    // the packed move in exact mode, 0 otherwise, EMPTY for free slots
+    private int[] moves;
+    private int size;
+    private int shift;
+    
+    
+    
+    /**
+     * Creates a set that can hold expectedSize pairs without growing.
+     */
+    public MoveMemory(int expectedSize, boolean exact) {
+        this.exact = exact;
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) * 2;
+        allocate(capacity);
+    }
+    
+    
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        moves = new int[capacity];
+        Arrays.fill(moves, EMPTY);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        size = 0;
+    }
+    
+    
+    
+    public boolean isExact() {
+        return exact;
+    }
+    
+    
+    
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(moves, EMPTY);
+        size = 0;
+    }
+    
+    
+    
+    public int size() {
+        return size;
+    }
+    
+    
+    
+    public boolean contains(long boardHash, int packedMove) {
+        long key = key(boardHash, packedMove);
+        int move = exact ? packedMove : 0;
+        for (int i = index(key, move); moves[i] != EMPTY; i = (i + 1) & (keys.length - 1)) 
+            if (keys[i] == key && moves[i] == move) return true;
+        return false;
+    }
+    
+    
+    
+    /**
+     * Adds the pair and returns true if it was not in the set before.
+     */
+    public boolean add(long boardHash, int packedMove) {
+        if (2 * (size + 1) > keys.length) grow();
+        long key = key(boardHash, packedMove);
+        int move = exact ? packedMove : 0;
+        int i = index(key, move);
+        for (; moves[i] != EMPTY; i = (i + 1) & (keys.length - 1)) 
+            if (keys[i] == key && moves[i] == move) return false;
+        keys[i] = key;
+        moves[i] = move;
+        size++;
+        return true;
+    }
+    
+    
+    
+    private long key(long boardHash, int packedMove) {
+        return exact ? boardHash : boardHash ^ Move.getMoveHash(packedMove);
+    }
+    
+    
+    
+    private int index(long key, int move) {
+        return (int)(((key ^ move) * MIX) >>> shift);
+    }
+    
+    
+    
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldMoves = moves;
+        allocate(2 * oldKeys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldMoves[i] == EMPTY) continue;
+            int j = index(oldKeys[i], oldMoves[i]);
+            while (moves[j] != EMPTY) j = (j + 1) & (keys.length - 1);
+            keys[j] = oldKeys[i];
+            moves[j] = oldMoves[i];
+            size++;
+        }
+    }
+    
+    
+}
@@ -0,0 +1,121 @@
+package learningcheckers;
+
+/**
+ * Sorts packed moves such that the moves most likely to be best are searched first:
+ * the move suggested by the transposition table, then captures (capturing kings first,
+ * promotions first), then the killer moves of the ply, then all other moves by their 
+ * history score.
+ * 
+ * The history score of a move (from, to) grows every time the move caused a cutoff
+ * somewhere in the search, the killer moves of a ply are the last two moves that caused 
+ * a cutoff at that ply. Both tables are kept until reset is called, which selectors do 
+ * at the start of every game.
+ */
+public class MoveOrderer {
+    
+    private static final int NUMBER_OF_SQUARES = 32;
+    private static final int MAX_PLY = 128;
+    private static final int KILLERS_PER_PLY = 2;
+    private static final int TABLE_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int CAPTURE_SCORE = 1 << 29;
+    private static final int KING_CAPTURE_BONUS = 1 << 27;
+    private static final int KILLER_SCORE = 1 << 28;
+    private static final int PROMOTION_SCORE = 1 << 26;
+    // history scores are halved when they reach this value, so they never exceed the scores above
+    private static final int MAX_HISTORY_SCORE = 1 << 25;
+    
+    private int[] history = new int[NUMBER_OF_SQUARES * NUMBER_OF_SQUARES];
+    private int[][] killers = new int[MAX_PLY][KILLERS_PER_PLY];
+    private int[] scores = new int[Board.MAX_NUMBER_OF_MOVES];
+    
+    
+    
+    public MoveOrderer() {
+        reset();
+    }
+    
+    
+    
+    public void reset() {
+        for (int i = 0; i < history.length; i++) history[i] = 0;
+        for (int[] k : killers) 
+            for (int i = 0; i < KILLERS_PER_PLY; i++) k[i] = Move.NO_MOVE;
+    }
+    
+    
+    
+    /**
+     * Sorts the moves of board in place. tableMove is searched first if it is one 
+     * of the moves, it may be Move.NO_MOVE.
+     */
+    public void order(MoveBuffer moves, Board b, int ply, int tableMove) {
+        int n = moves.size();
+        if (scores.length < n) scores = new int[n];
+        int[] killersOfPly = killers[Math.min(ply, MAX_PLY - 1)];
+        for (int i = 0; i < n; i++) 
+            scores[i] = score(moves.get(i), b, killersOfPly, tableMove);
+        // insertion sort, the lists are short
+        for (int i = 1; i < n; i++) {
+            int m = moves.get(i);
+            int s = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < s) {
+                scores[j + 1] = scores[j];
+                moves.set(j + 1, moves.get(j));
+                j--;
+            }
+            scores[j + 1] = s;
+            moves.set(j + 1, m);
+        }
+    }
+    
+    
+    
+    private int score(int m, Board b, int[] killersOfPly, int tableMove) {
+        if (m == tableMove) return TABLE_MOVE_SCORE;
+        int promotion = Move.isPromotion(m) ? PROMOTION_SCORE : 0;
+        if (Move.isCapture(m)) {
+            int captured = Move.getCaptured(m);
+            boolean king = b.isKing(b.getContent(Board.getSquareX(captured), Board.getSquareY(captured)));
+            return CAPTURE_SCORE + (king ? KING_CAPTURE_BONUS : 0) + promotion;
+        }
+        for (int i = 0; i < KILLERS_PER_PLY; i++) 
+            if (killersOfPly[i] == m) return KILLER_SCORE - i;
+        return promotion + history[getHistoryIndex(m)];
+    }
+    
+    
+    
+    /**
+     * Tells the orderer that move m caused a cutoff at the given ply with the given remaining depth.
+     * Captures are ordered first anyway and are not recorded.
+     */
+    public void registerCutoff(int m, int depth, int ply) {
+        if (Move.isCapture(m)) return;
+        int index = getHistoryIndex(m);
+        history[index] += depth * depth;
+        if (history[index] > MAX_HISTORY_SCORE) 
+            for (int i = 0; i < history.length; i++) history[i] /= 2;
+        if (ply < MAX_PLY) {
+            int[] killersOfPly = killers[ply];
+            if (killersOfPly[0] != m) {
+                for (int i = KILLERS_PER_PLY - 1; i > 0; i--) killersOfPly[i] = killersOfPly[i - 1];
+                killersOfPly[0] = m;
+            }
+        }
+    }
+    
+    
+    
+    private int getHistoryIndex(int m) {
+        return Move.getFrom(m) * NUMBER_OF_SQUARES + Move.getTo(m);
+    }
+    
+    
+    
+    public int getHistoryScore(int m) {
+        return history[getHistoryIndex(m)];
+    }
+    
+    
+}
@@ -1,6 +1,6 @@
 package learningcheckers;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 
 public abstract class MoveSelector {
@@ -8,6 +8,38 @@ public abstract class MoveSelector {
     
     
     public abstract Move select(List<Move> legalMoves, Board b, int player);
+    
+    
+    
+    /**
+     * Same as select(List, Board, int) for packed moves (see Move.pack).
+     * Returns the selected packed move or Move.NO_MOVE.
+     * Selectors that care about allocations should override this method, 
+     * by default the moves are unpacked and passed to select(List, Board, int).
+     */
+    public int select(MoveBuffer legalMoves, Board b, int player) {
+        List<Move> li = new ArrayList<>(legalMoves.size());
+        for (int i = 0; i < legalMoves.size(); i++) li.add(Move.unpack(legalMoves.get(i)));
+        Move m = select(li, b, player);
+        if (m == null) return Move.NO_MOVE;
+        int index = li.indexOf(m);
+        if (index >= 0) return legalMoves.get(index);
+        return b.packMove(m);
+    }
+    
+    
+    
+    /**
+     * For selectors that implement select(MoveBuffer, Board, int): 
+     * packs the given moves, selects one of them and returns it unpacked.
+     */
+    protected Move selectPacked(List<Move> legalMoves, Board b, int player) {
+        MoveBuffer moves = new MoveBuffer(legalMoves.size());
+        for (Move candidate : legalMoves) moves.add(b.packMove(candidate));
+        int selected = select(moves, b, player);
+        if (selected == Move.NO_MOVE) return null;
+        return legalMoves.get(moves.indexOf(selected));
+    }
 
     
     
@@ -17,7 +49,7 @@ public abstract class MoveSelector {
     // therefore every selector has to keep track on the moves done so far
     // also, the memory of a selector should be reset using resetBoardMoveMemory
     // each time a new game is started
-    private HashSet<Long> boardMoveMemory;
+    private MoveMemory boardMoveMemory = new MoveMemory(Game.MAX_NUMBER_OF_ROUNDS, false);
 
     
     public MoveSelector() {
@@ -26,22 +58,66 @@ public abstract class MoveSelector {
 
     
     public void resetBoardMoveMemory() {
-        boardMoveMemory = new HashSet<>();
+        boardMoveMemory.clear();
     }
     
     
-    private long boardMoveHash(Board b, Move m) {
-        return b.getBoardHash() * m.getMoveHash();
+    /**
+     * In exact mode the move memory compares board hash and move separately instead of 
+     * their combined hash (see MoveMemory). Clears the memory.
+     */
+    public void setExactMoveMemory(boolean exact) {
+        boardMoveMemory = new MoveMemory(Game.MAX_NUMBER_OF_ROUNDS, exact);
     }
 
     
     public boolean moveMemoryContains(Board b, Move m) {
-        return boardMoveMemory.contains(boardMoveHash(b, m));
+        return boardMoveMemory.contains(b.getBoardHash(), b.packMove(m));
     }
     
     
     public void registerMoveOnBoard(Board b, Move m) {
-        boardMoveMemory.add(boardMoveHash(b, m));
+        boardMoveMemory.add(b.getBoardHash(), b.packMove(m));
+    }
+    
+    
+    public boolean moveMemoryContains(Board b, int packedMove) {
+        return boardMoveMemory.contains(b.getBoardHash(), packedMove);
+    }
+    
+    
+    public void registerMoveOnBoard(Board b, int packedMove) {
+        boardMoveMemory.add(b.getBoardHash(), packedMove);
+    }
+    
+    
+    
+    /**
+     * Seeds the random decisions of this selector so that its games can be repeated.
+     * Does nothing for selectors without random decisions.
+     */
+    public void setSeed(long seed) {
+    }
+    
+    
+    
+    /**
+     * Returns a copy of this selector that plays the same way but shares no state 
+     * with it (such as the move memory), so both can be used by different threads.
+     * Selectors that support this override this method.
+     */
+    @Override
+    public Object clone() {
+        throw new RuntimeException(getClass().getSimpleName() + " can not be cloned.");
+    }
+    
+    
+    
+    /**
+     * Releases what the selector holds beyond its memory, such as threads.
+     * The selector can not be used any more afterwards. Does nothing by default.
+     */
+    public void close() {
     }
     
     
@@ -0,0 +1,126 @@
+package learningcheckers;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the normal equations (X^T X) w = X^T y of a linear least squares fit
+ * one sample (row x of X with target y) at a time, so the memory needed does not depend
+ * on the number of samples. Accumulators filled by different threads are combined with merge.
+ *
+ * solve adds ridge * (number of samples) to the diagonal, except for the first feature,
+ * which is the constant basis (see FeatureExtractor.BASIS), and solves the system
+ * with a Cholesky decomposition.
+ */
+public class NormalEquations {
+    
+    private int numberOfFeatures;
+    // X^T X, row-major, only the upper triangle (i <= j) is filled
+    private double[] xtx;
+    private double[] xty;
+    private long numberOfSamples;
+    
+    
+    
+    public NormalEquations(int numberOfFeatures) {
+        this.numberOfFeatures = numberOfFeatures;
+        xtx = new double[numberOfFeatures * numberOfFeatures];
+        xty = new double[numberOfFeatures];
+    }
+    
+    
+    
+    public int getNumberOfFeatures() {
+        return numberOfFeatures;
+    }
+    
+    
+    
+    public long getNumberOfSamples() {
+        return numberOfSamples;
+    }
+    
+    
+    
+    /**
+     * Adds the sample whose features are in the given row of the row-major matrix features
+     * (as written by FeatureExtractor.extract).
+     */
+    public void add(double[] features, int row, double target) {
+        int offset = row * numberOfFeatures;
+        for (int i = 0; i < numberOfFeatures; i++) {
+            double xi = features[offset + i];
+            if (xi == 0) continue;
+            int rowStart = i * numberOfFeatures;
+            for (int j = i; j < numberOfFeatures; j++) xtx[rowStart + j] += xi * features[offset + j];
+            xty[i] += xi * target;
+        }
+        numberOfSamples++;
+    }
+    
+    
+    
+    /**
+     * Adds all samples of other to this accumulator.
+     */
+    public void merge(NormalEquations other) {
+        if (other.numberOfFeatures != numberOfFeatures)
+            throw new RuntimeException("Can not merge " + other.numberOfFeatures + " features into " + numberOfFeatures + ".");
+        for (int i = 0; i < xtx.length; i++) xtx[i] += other.xtx[i];
+        for (int i = 0; i < numberOfFeatures; i++) xty[i] += other.xty[i];
+        numberOfSamples += other.numberOfSamples;
+    }
+    
+    
+    
+    public void clear() {
+        Arrays.fill(xtx, 0);
+        Arrays.fill(xty, 0);
+        numberOfSamples = 0;
+    }
+    
+    
+    
+    /**
+     * Returns the weights w that minimise |X w - y|^2 + ridge * (number of samples) * |w without w[0]|^2.
+     */
+    public double[] solve(double ridge) {
+        if (numberOfSamples == 0) throw new RuntimeException("No samples to solve for.");
+        int n = numberOfFeatures;
+        // Cholesky decomposition A = L L^T, L is written into the lower triangle of a
+        double[] a = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                a[i * n + j] = xtx[i * n + j];
+                a[j * n + i] = xtx[i * n + j];
+            }
+            if (i > 0) a[i * n + i] += ridge * numberOfSamples;
+        }
+        for (int j = 0; j < n; j++) {
+            double d = a[j * n + j];
+            for (int k = 0; k < j; k++) d -= a[j * n + k] * a[j * n + k];
+            if (d <= 0) throw new RuntimeException("The normal equations are singular at feature " + j + ", use a larger ridge than " + ridge + ".");
+            double l = Math.sqrt(d);
+            a[j * n + j] = l;
+            for (int i = j + 1; i < n; i++) {
+                double s = a[i * n + j];
+                for (int k = 0; k < j; k++) s -= a[i * n + k] * a[j * n + k];
+                a[i * n + j] = s / l;
+            }
+        }
+        // forward substitution L z = X^T y, then backward substitution L^T w = z
+        double[] w = new double[n];
+        for (int i = 0; i < n; i++) {
+            double s = xty[i];
+            for (int k = 0; k < i; k++) s -= a[i * n + k] * w[k];
+            w[i] = s / a[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double s = w[i];
+            for (int k = i + 1; k < n; k++) s -= a[k * n + i] * w[k];
+            w[i] = s / a[i * n + i];
+        }
+        return w;
+    }
+    
+    
+}
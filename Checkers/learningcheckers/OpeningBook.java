@@ -0,0 +1,108 @@
+package learningcheckers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An opening book file written by OpeningBookBuilder, memory-mapped and searched binary.
+ * 
+ * The file starts with MAGIC and the number of entries, followed by the entries of 
+ * ENTRY_BYTES bytes each: long board hash, int packed move, int number of games 
+ * and int points of the player who made the move (2 for a win, 1 for a draw). 
+ * The entries are sorted by board hash and move.
+ */
+public class OpeningBook {
+    
+    public static final int MAGIC = 0x434B4F42;
+    public static final int HEADER_BYTES = 8;
+    public static final int ENTRY_BYTES = 20;
+    
+    private ByteBuffer entries;
+    private int numberOfEntries;
+    
+    
+    
+    public OpeningBook(Path bookFile) {
+        try (FileChannel channel = FileChannel.open(bookFile, StandardOpenOption.READ)) {
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (file.limit() < HEADER_BYTES || file.getInt(0) != MAGIC) 
+                throw new RuntimeException(bookFile + " is not an opening book.");
+            numberOfEntries = file.getInt(4);
+            if (file.limit() != HEADER_BYTES + (long)numberOfEntries * ENTRY_BYTES) 
+                throw new RuntimeException(bookFile + " has " + file.limit() + " bytes, expected " + numberOfEntries + " entries.");
+            entries = file.position(HEADER_BYTES).slice();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not read " + bookFile + ".", e);
+        }
+    }
+    
+    
+    
+    private OpeningBook(ByteBuffer entries, int numberOfEntries) {
+        this.entries = entries;
+        this.numberOfEntries = numberOfEntries;
+    }
+    
+    
+    
+    /**
+     * Returns a view of the same book with its own buffer, for use by another thread.
+     */
+    public OpeningBook duplicate() {
+        return new OpeningBook(entries.duplicate(), numberOfEntries);
+    }
+    
+    
+    
+    public int getNumberOfEntries() {
+        return numberOfEntries;
+    }
+    
+    
+    
+    /**
+     * Returns the index of the first entry of the board with the given hash 
+     * or -1 if the board is not in the book.
+     */
+    public int find(long boardHash) {
+        int low = 0;
+        int high = numberOfEntries;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getBoardHash(middle) < boardHash) low = middle + 1;
+            else high = middle;
+        }
+        if (low < numberOfEntries && getBoardHash(low) == boardHash) return low;
+        return -1;
+    }
+    
+    
+    
+    public long getBoardHash(int entry) {
+        return entries.getLong(entry * ENTRY_BYTES);
+    }
+    
+    
+    
+    public int getMove(int entry) {
+        return entries.getInt(entry * ENTRY_BYTES + 8);
+    }
+    
+    
+    
+    public int getGames(int entry) {
+        return entries.getInt(entry * ENTRY_BYTES + 12);
+    }
+    
+    
+    
+    public int getPoints(int entry) {
+        return entries.getInt(entry * ENTRY_BYTES + 16);
+    }
+    
+    
+}
@@ -0,0 +1,132 @@
+package learningcheckers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects for the first plies of games how often each move was played in a position 
+ * and how it scored, and writes the result as an opening book file (see OpeningBook).
+ * Arguments of main: game file (see GameRecordWriter), book file, number of plies (default 16)
+ * and the minimal number of games of a move (default 2).
+ */
+public class OpeningBookBuilder {
+    
+    private int maxPly;
+    // board hash -> packed move -> {games, points}
+    private Map<Long, Map<Integer, int[]>> statistics = new HashMap<>();
+    
+    
+    
+    /**
+     * @param maxPly only the moves of the first maxPly plies of a game are collected.
+     */
+    public OpeningBookBuilder(int maxPly) {
+        this.maxPly = maxPly;
+    }
+    
+    
+    
+    /**
+     * Adds the first plies of the game that starts with start and continues with moves.
+     * @param winner the number of the winning player or -1 for a draw (see Game.run).
+     */
+    public void addGame(Board start, int[] moves, int winner) {
+        Board b = (Board)start.clone();
+        for (int ply = 0; ply < Math.min(maxPly, moves.length); ply++) {
+            int player = b.getNextPlayer();
+            int[] entry = statistics.computeIfAbsent(b.getBoardHash(), h -> new HashMap<>())
+                    .computeIfAbsent(moves[ply], m -> new int[2]);
+            entry[0]++;
+            entry[1] += winner == -1 ? 1 : (winner == player ? 2 : 0);
+            b.makeMove(moves[ply], null);
+        }
+    }
+    
+    
+    
+    public void addGame(GameRecord game) {
+        int[] moves = new int[game.getNumberOfPlies()];
+        for (int i = 0; i < moves.length; i++) moves[i] = game.getMove(i);
+        addGame(game.getStartBoard(), moves, game.getWinner());
+    }
+    
+    
+    
+    /**
+     * Adds all games of a file written by GameRecordWriter.
+     */
+    public void addGames(Path gameFile) {
+        try (GameRecordReader reader = new GameRecordReader(gameFile)) {
+            for (GameRecord game = reader.next(); game != null; game = reader.next()) addGame(game);
+        }
+    }
+    
+    
+    
+    public int getNumberOfPositions() {
+        return statistics.size();
+    }
+    
+    
+    
+    /**
+     * Writes all moves that were played in at least minGames games to bookFile,
+     * sorted by board hash and move so that OpeningBook can search them.
+     * @return The number of moves written.
+     */
+    public int write(Path bookFile, int minGames) {
+        List<Long> hashes = new ArrayList<>(statistics.keySet());
+        Collections.sort(hashes);
+        int entries = 0;
+        for (Map<Integer, int[]> moves : statistics.values()) 
+            for (int[] entry : moves.values()) if (entry[0] >= minGames) entries++;
+        ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER_BYTES + entries * OpeningBook.ENTRY_BYTES);
+        buffer.putInt(OpeningBook.MAGIC);
+        buffer.putInt(entries);
+        for (long hash : hashes) {
+            Map<Integer, int[]> moves = statistics.get(hash);
+            List<Integer> packedMoves = new ArrayList<>(moves.keySet());
+            Collections.sort(packedMoves);
+            for (int m : packedMoves) {
+                int[] entry = moves.get(m);
+                if (entry[0] < minGames) continue;
+                buffer.putLong(hash);
+                buffer.putInt(m);
+                buffer.putInt(entry[0]);
+                buffer.putInt(entry[1]);
+            }
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(bookFile, StandardOpenOption.CREATE, 
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write " + bookFile + ".", e);
+        }
+        return entries;
+    }
+    
+    
+    
+    public static void main(String[] args) {
+        Path gameFile = Path.of(args.length > 0 ? args[0] : "games.bin");
+        Path bookFile = Path.of(args.length > 1 ? args[1] : "book.bin");
+        int maxPly = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int minGames = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        OpeningBookBuilder builder = new OpeningBookBuilder(maxPly);
+        builder.addGames(gameFile);
+        int entries = builder.write(bookFile, minGames);
+        System.out.println(entries + " moves of " + builder.getNumberOfPositions() + " positions written to " + bookFile);
+    }
+    
+    
+}
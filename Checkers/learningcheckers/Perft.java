@@ -0,0 +1,217 @@
+package learningcheckers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the leaf nodes of the move tree to a given depth ("perft"), to check
+ * Board.getAllLegalMoves and Board.makeMove against known counts and to measure their speed.
+ *
+ * Every position is searched with makeMove and unmakeMove on one board,
+ * with one MoveBuffer and one UndoRecord per ply, so nothing is allocated while counting.
+ * Games are not stopped when a player has lost: that player simply has no moves.
+ *
+ * The reference counts were computed with the list based move generator
+ * the bitboards replaced.
+ *
+ * Arguments of main: maximum depth (default 6) and number of threads (default 1).
+ * With more than one thread the root moves are counted in parallel.
+ */
+public class Perft {
+    
+    /**
+     * The test positions as bitboards (player 1 pieces, player 2 pieces, kings, next player).
+     */
+    private static final int[][] POSITIONS = {
+        // start position
+        {4095, -1048576, 0, 1},
+        // the kings setup of Board.main
+        {263679, -1046016, 168036864, 1},
+        // after 24 random plies
+        {199625, -475267070, 2, 1},
+        // two kings against two kings, player 2 to move
+        {16400, 167772160, 167788560, 2},
+        // few pieces shortly before promotions
+        {7340040, -2080374016, 67108872, 1},
+    };
+    
+    /**
+     * REFERENCE_COUNTS[p][d - 1] is the number of leaf nodes of position p at depth d.
+     */
+    private static final long[][] REFERENCE_COUNTS = {
+        {7, 49, 379, 2872, 23582, 189143, 1585096},
+        {9, 93, 822, 8434, 78705, 834386, 7767231},
+        {10, 143, 1197, 15560, 119913, 1460876, 10940144},
+        {16, 260, 3827, 55482, 793913, 11287657},
+        {11, 98, 1102, 10065, 114147, 1125354, 12964776},
+    };
+    
+    private MoveBuffer[] moves;
+    private UndoRecord[] undo;
+    
+    
+    
+    /**
+     * @param maxDepth the largest depth this instance can count.
+     */
+    public Perft(int maxDepth) {
+        moves = new MoveBuffer[maxDepth + 1];
+        undo = new UndoRecord[maxDepth + 1];
+        for (int i = 0; i <= maxDepth; i++) {
+            moves[i] = new MoveBuffer();
+            undo[i] = new UndoRecord();
+        }
+    }
+    
+    
+    
+    /**
+     * Returns the number of leaf nodes depth plies below b.
+     * b is changed while counting but is the same again afterwards.
+     */
+    public long perft(Board b, int depth) {
+        if (depth > moves.length - 1) throw new RuntimeException("Depth " + depth + " is larger than " + (moves.length - 1) + ".");
+        return count(b, depth);
+    }
+    
+    
+    
+    private long count(Board b, int depth) {
+        if (depth == 0) return 1;
+        MoveBuffer buffer = moves[depth];
+        int n = b.getAllLegalMoves(b.getNextPlayer(), buffer);
+        // the leaves need not be visited
+        if (depth == 1) return n;
+        UndoRecord record = undo[depth];
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            b.makeMove(buffer.get(i), record);
+            nodes += count(b, depth - 1);
+            b.unmakeMove(record);
+        }
+        return nodes;
+    }
+    
+    
+    
+    /**
+     * Split perft: returns the number of leaf nodes below every root move,
+     * in the order of Board.getAllLegalMoves. The root moves are written into rootMoves.
+     */
+    public long[] divide(Board b, int depth, MoveBuffer rootMoves) {
+        if (depth < 1) throw new RuntimeException("Split perft needs a depth of at least 1: " + depth);
+        int n = b.getAllLegalMoves(b.getNextPlayer(), rootMoves);
+        long[] nodes = new long[n];
+        UndoRecord record = new UndoRecord();
+        for (int i = 0; i < n; i++) {
+            b.makeMove(rootMoves.get(i), record);
+            nodes[i] = perft(b, depth - 1);
+            b.unmakeMove(record);
+        }
+        return nodes;
+    }
+    
+    
+    
+    /**
+     * Same as divide, but the root moves are counted by numberOfThreads threads,
+     * each on its own copy of the board.
+     */
+    public static long[] divideParallel(Board b, int depth, MoveBuffer rootMoves, int numberOfThreads) {
+        if (depth < 1) throw new RuntimeException("Split perft needs a depth of at least 1: " + depth);
+        int n = b.getAllLegalMoves(b.getNextPlayer(), rootMoves);
+        List<Callable<Long>> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Board child = b.apply(rootMoves.get(i));
+            tasks.add(() -> new Perft(depth - 1).perft(child, depth - 1));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, r -> {
+            Thread t = new Thread(r, "Perft worker");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] nodes = new long[n];
+        try {
+            List<Future<Long>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < n; i++) nodes[i] = results.get(i).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Perft was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Perft failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return nodes;
+    }
+    
+    
+    
+    public static int getNumberOfPositions() {
+        return POSITIONS.length;
+    }
+    
+    
+    
+    public static Board getPosition(int i) {
+        int[] p = POSITIONS[i];
+        return Board.fromMasks(p[0], p[1], p[2], p[3]);
+    }
+    
+    
+    
+    /**
+     * Returns the reference count of position i at the given depth, or -1 if there is none.
+     */
+    public static long getReferenceCount(int i, int depth) {
+        if (depth < 1 || depth > REFERENCE_COUNTS[i].length) return -1;
+        return REFERENCE_COUNTS[i][depth - 1];
+    }
+    
+    
+    
+    private static long sum(long[] nodes) {
+        long sum = 0;
+        for (long n : nodes) sum += n;
+        return sum;
+    }
+    
+    
+    
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        
+        MoveBuffer rootMoves = new MoveBuffer();
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (int p = 0; p < getNumberOfPositions(); p++) {
+            Board b = getPosition(p);
+            Perft perft = new Perft(maxDepth);
+            for (int depth = 1; depth <= maxDepth && getReferenceCount(p, depth) >= 0; depth++) {
+                long start = System.nanoTime();
+                long[] nodes = threads > 1 ? divideParallel(b, depth, rootMoves, threads) : perft.divide(b, depth, rootMoves);
+                long nanos = System.nanoTime() - start;
+                long count = sum(nodes);
+                long expected = getReferenceCount(p, depth);
+                if (count != expected) {
+                    for (int i = 0; i < nodes.length; i++) System.out.println(Move.toString(rootMoves.get(i)) + ": " + nodes[i]);
+                    throw new RuntimeException("Position " + p + ", depth " + depth + ": " + count + " nodes instead of " + expected + "\n" + b);
+                }
+                System.out.println("position " + p + ", depth " + depth + ": " + count + " nodes, " +
+                        nanos / 1000000 + " ms, " + Math.round(count * 1e9 / Math.max(1, nanos)) + " nodes/s");
+                totalNodes += count;
+                totalNanos += nanos;
+            }
+        }
+        System.out.println("All counts correct, " + totalNodes + " nodes, " +
+                Math.round(totalNodes * 1e9 / Math.max(1, totalNanos)) + " nodes/s");
+    }
+    
+    
+}
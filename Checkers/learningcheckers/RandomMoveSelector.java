@@ -1,12 +1,11 @@
 package learningcheckers;
 
-import java.util.Calendar;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class RandomMoveSelector extends MoveSelector {
     
-    private static Random rand = new Random(Calendar.getInstance().getTimeInMillis());
+    private SplittableRandom rand = new SplittableRandom();
     
 
     @Override
@@ -16,6 +15,26 @@ public class RandomMoveSelector extends MoveSelector {
     }
     
     
+    @Override
+    public int select(MoveBuffer legalMoves, Board b, int player) {
+        int k = rand.nextInt(legalMoves.size());
+        return legalMoves.get(k);
+    }
+    
+    
+    @Override
+    public void setSeed(long seed) {
+        rand = new SplittableRandom(seed);
+    }
+    
+    
+    @Override
+    public Object clone() {
+        RandomMoveSelector copy = new RandomMoveSelector();
+        copy.rand = rand.split();
+        return copy;
+    }
+    
     
 
 }
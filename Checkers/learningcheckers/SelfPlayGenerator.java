@@ -0,0 +1,54 @@
+package learningcheckers;
+
+import java.nio.file.Path;
+
+/**
+ * Plays games between two selectors on all cores and appends them to a game file 
+ * (see GameRecordWriter), so that they can be used for training many times.
+ * Arguments: file, number of games (default 10000), seed (default 0).
+ */
+public class SelfPlayGenerator {
+    
+    
+    
+    /**
+     * Plays numberOfGames games between first and second with runner and appends them to file.
+     * @return The result of the games seen from first.
+     */
+    public static MatchResult generate(MatchRunner runner, MoveSelector first, int firstSelectorId, 
+            MoveSelector second, int secondSelectorId, int numberOfGames, long seed, Path file) {
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            runner.setRecorder(writer, firstSelectorId, secondSelectorId);
+            return runner.play(first, second, numberOfGames, seed);
+        } finally {
+            runner.setRecorder(null, 0, 0);
+        }
+    }
+    
+    
+    
+    public static void main(String[] args) {
+        Path file = Path.of(args.length > 0 ? args[0] : "games.bin");
+        int numberOfGames = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        MatchRunner runner = new MatchRunner(Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        MatchResult result = generate(runner, new HumanIntuitionLinearSelector(), 1, 
+                new LinearSelector(8, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0), 2, numberOfGames, seed, file);
+        runner.shutdown();
+        System.out.println(numberOfGames + " games written to " + file + " in " + (System.nanoTime() - start) / 1000000 + " ms: " + result);
+        
+        long plies = 0;
+        int games = 0;
+        start = System.nanoTime();
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            for (GameRecord game = reader.next(); game != null; game = reader.next()) {
+                games++;
+                plies += game.getNumberOfPlies();
+            }
+        }
+        System.out.println(games + " games with " + plies + " plies read in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+    
+    
+}
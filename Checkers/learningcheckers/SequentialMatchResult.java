@@ -0,0 +1,44 @@
+package learningcheckers;
+
+/**
+ * The outcome of a match that was stopped by a SequentialProbabilityRatioTest,
+ * together with the decision of the test.
+ */
+public class SequentialMatchResult extends MatchResult {
+    
+    private SequentialProbabilityRatioTest.Decision decision;
+    private double logLikelihoodRatio;
+    
+    
+    
+    public SequentialMatchResult(MatchResult result, SequentialProbabilityRatioTest.Decision decision, double logLikelihoodRatio) {
+        super(result.getWins(), result.getLosses(), result.getDraws());
+        this.decision = decision;
+        this.logLikelihoodRatio = logLikelihoodRatio;
+    }
+    
+    
+    
+    /**
+     * Returns the decision of the test, UNDECIDED if the maximal number of games
+     * was reached before the test decided.
+     */
+    public SequentialProbabilityRatioTest.Decision getDecision() {
+        return decision;
+    }
+    
+    
+    
+    public double getLogLikelihoodRatio() {
+        return logLikelihoodRatio;
+    }
+    
+    
+    
+    @Override
+    public String toString() {
+        return super.toString() + ", " + decision + " after " + getNumberOfGames() + " games (LLR " + logLikelihoodRatio + ")";
+    }
+    
+    
+}
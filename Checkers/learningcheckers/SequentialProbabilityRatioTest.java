@@ -0,0 +1,94 @@
+package learningcheckers;
+
+/**
+ * Sequential probability ratio test for a match between two selectors.
+ * 
+ * H0: the first selector is elo0 Elo points stronger than the second one,
+ * H1: it is elo1 Elo points stronger (elo1 > elo0). After every batch of games 
+ * the log-likelihood ratio of the results is compared against the bounds 
+ * ln(beta / (1 - alpha)) and ln((1 - beta) / alpha), and the match stops as soon 
+ * as one of them is crossed. alpha is the probability to accept H1 although H0 is true,
+ * beta the probability to accept H0 although H1 is true.
+ * 
+ * The ratio is computed with the normal approximation of the mean score per game 
+ * (win 1, draw 1/2, loss 0), which works with draws and needs no draw model.
+ */
+public class SequentialProbabilityRatioTest {
+    
+    public enum Decision { H0_ACCEPTED, H1_ACCEPTED, UNDECIDED }
+    
+    private double elo0;
+    private double elo1;
+    private double lowerBound;
+    private double upperBound;
+    
+    
+    
+    public SequentialProbabilityRatioTest(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0) throw new RuntimeException("elo1 must be larger than elo0: " + elo0 + ", " + elo1);
+        if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) 
+            throw new RuntimeException("alpha and beta must be between 0 and 1: " + alpha + ", " + beta);
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+    
+    
+    
+    /**
+     * Returns the expected score per game of a player that is elo Elo points stronger.
+     */
+    public static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+    
+    
+    
+    /**
+     * Returns the log-likelihood ratio of H1 against H0 for the given results,
+     * 0 as long as the results have no variance (for example no game or only draws).
+     */
+    public double getLogLikelihoodRatio(MatchResult result) {
+        int n = result.getNumberOfGames();
+        if (n == 0) return 0;
+        double mean = result.getScore();
+        double variance = (result.getWins() * (1 - mean) * (1 - mean) + 
+                result.getLosses() * mean * mean + 
+                result.getDraws() * (0.5 - mean) * (0.5 - mean)) / n;
+        if (variance <= 0) return 0;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return n * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance);
+    }
+    
+    
+    
+    public Decision getDecision(MatchResult result) {
+        double llr = getLogLikelihoodRatio(result);
+        if (llr >= upperBound) return Decision.H1_ACCEPTED;
+        if (llr <= lowerBound) return Decision.H0_ACCEPTED;
+        return Decision.UNDECIDED;
+    }
+    
+    
+    
+    public double getLowerBound() {
+        return lowerBound;
+    }
+    
+    
+    
+    public double getUpperBound() {
+        return upperBound;
+    }
+    
+    
+    
+    @Override
+    public String toString() {
+        return "SPRT(elo0: " + elo0 + ", elo1: " + elo1 + ", bounds: " + lowerBound + ", " + upperBound + ")";
+    }
+    
+    
+}
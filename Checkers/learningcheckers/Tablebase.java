@@ -0,0 +1,189 @@
+package learningcheckers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Endgame tablebase for boards with kings only, generated by TablebaseGenerator.
+ * 
+ * There is one file per material (number of kings of player 1 and of player 2), 
+ * memory-mapped when the tablebase is opened. A file holds one byte per board:
+ * 0 if the board is a draw, d + 1 if the player to move wins in d plies and 
+ * -(d + 1) if the player to move loses in d plies (with best play of both, 
+ * not counting the move memory and the limit on the number of rounds of a game).
+ * 
+ * The boards of a material are indexed by the squares of the kings of player 1, 
+ * the squares of the kings of player 2 (each ranked in the combinatorial number system) 
+ * and the player to move, see getIndex. Squares are numbered as in Board.getSquare.
+ */
+public class Tablebase {
+    
+    public static final int MAGIC = 0x434B5442;
+    public static final int HEADER_BYTES = 12;
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    private static final int NUMBER_OF_SQUARES = Board.getSize() * Board.getSize() / 2;
+    // binomial[n][k] = n over k
+    private static final long[][] binomial = new long[NUMBER_OF_SQUARES + 1][NUMBER_OF_SQUARES + 1];
+    
+    static {
+        for (int n = 0; n <= NUMBER_OF_SQUARES; n++) {
+            binomial[n][0] = 1;
+            for (int k = 1; k <= n; k++) binomial[n][k] = binomial[n - 1][k - 1] + (k <= n - 1 ? binomial[n - 1][k] : 0);
+        }
+    }
+    
+    private int maxPieces;
+    // tables[a][b] holds the boards with a kings of player 1 and b kings of player 2
+    private ByteBuffer[][] tables;
+    
+    
+    
+    /**
+     * Maps all tablebase files in directory for up to maxPieces pieces. Missing files are skipped.
+     */
+    public Tablebase(Path directory, int maxPieces) {
+        this.maxPieces = maxPieces;
+        tables = new ByteBuffer[maxPieces + 1][maxPieces + 1];
+        for (int a = 1; a < maxPieces; a++) {
+            for (int b = 1; a + b <= maxPieces; b++) {
+                Path file = directory.resolve(getFileName(a, b));
+                if (!Files.exists(file)) continue;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    if (table.getInt(0) != MAGIC || table.getInt(4) != a || table.getInt(8) != b 
+                            || table.limit() != HEADER_BYTES + getSize(a, b)) 
+                        throw new RuntimeException(file + " is not a tablebase file for " + a + " against " + b + " kings.");
+                    tables[a][b] = table.position(HEADER_BYTES).slice();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Can not read " + file + ".", e);
+                }
+            }
+        }
+    }
+    
+    
+    
+    public static String getFileName(int player1Kings, int player2Kings) {
+        return "kings_" + player1Kings + "_" + player2Kings + ".tb";
+    }
+    
+    
+    
+    /**
+     * Returns the number of boards of a material, including the ones where 
+     * pieces of both players are on the same square (which are never used).
+     */
+    public static long getSize(int player1Kings, int player2Kings) {
+        return 2 * binomial[NUMBER_OF_SQUARES][player1Kings] * binomial[NUMBER_OF_SQUARES][player2Kings];
+    }
+    
+    
+    
+    public static int getIndex(int player1Pieces, int player2Pieces, int nextPlayer) {
+        long index = rank(player1Pieces) * binomial[NUMBER_OF_SQUARES][Integer.bitCount(player2Pieces)] + rank(player2Pieces);
+        return (int)(2 * index + nextPlayer - 1);
+    }
+    
+    
+    
+    /**
+     * Returns the pieces of player 1 for the given index of the table of a material.
+     */
+    static int getPlayer1Pieces(int index, int player1Kings, int player2Kings) {
+        return unrank(index / 2 / binomial[NUMBER_OF_SQUARES][player2Kings], player1Kings);
+    }
+    
+    
+    
+    static int getPlayer2Pieces(int index, int player1Kings, int player2Kings) {
+        return unrank(index / 2 % binomial[NUMBER_OF_SQUARES][player2Kings], player2Kings);
+    }
+    
+    
+    
+    static int getNextPlayer(int index) {
+        return index % 2 + 1;
+    }
+    
+    
+    
+    private static long rank(int squares) {
+        long rank = 0;
+        for (int k = 1; squares != 0; k++) {
+            rank += binomial[Integer.numberOfTrailingZeros(squares)][k];
+            squares &= squares - 1;
+        }
+        return rank;
+    }
+    
+    
+    
+    private static int unrank(long rank, int k) {
+        int squares = 0;
+        for (; k > 0; k--) {
+            int square = k - 1;
+            while (square + 1 < NUMBER_OF_SQUARES && binomial[square + 1][k] <= rank) square++;
+            rank -= binomial[square][k];
+            squares |= 1 << square;
+        }
+        return squares;
+    }
+    
+    
+    
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+    
+    
+    
+    /**
+     * Returns the value of b for the player to move (see the class comment) 
+     * or UNKNOWN if b is not in the tablebase.
+     */
+    public int probe(Board b) {
+        int player1Pieces = b.getPiecesMask(1);
+        int player2Pieces = b.getPiecesMask(2);
+        if ((b.getKingsMask(1) | b.getKingsMask(2)) != (player1Pieces | player2Pieces)) return UNKNOWN;
+        int player1Kings = Integer.bitCount(player1Pieces);
+        int player2Kings = Integer.bitCount(player2Pieces);
+        if (player1Kings == 0 || player2Kings == 0 || player1Kings + player2Kings > maxPieces) return UNKNOWN;
+        ByteBuffer table = tables[player1Kings][player2Kings];
+        if (table == null) return UNKNOWN;
+        return table.get(getIndex(player1Pieces, player2Pieces, b.getNextPlayer()));
+    }
+    
+    
+    
+    public static boolean isWin(int value) {
+        return value != UNKNOWN && value > 0;
+    }
+    
+    
+    
+    public static boolean isLoss(int value) {
+        return value != UNKNOWN && value < 0;
+    }
+    
+    
+    
+    public static boolean isDraw(int value) {
+        return value == 0;
+    }
+    
+    
+    
+    /**
+     * Returns the number of plies until the end of the game for a won or lost value.
+     */
+    public static int getDistance(int value) {
+        return Math.abs(value) - 1;
+    }
+    
+    
+}
@@ -0,0 +1,199 @@
+package learningcheckers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generates the files of a Tablebase for all materials of kings only with up to maxPieces pieces.
+ * 
+ * The materials are generated with increasing number of pieces, since a capture leads to a material 
+ * with fewer pieces. Each material is solved in passes: in pass d every board that is not 
+ * decided yet becomes a win in d plies if one of its moves leads to a board lost in d - 1 plies, 
+ * and a loss in d plies if all of its moves lead to boards won in at most d - 1 plies. 
+ * Boards without moves are lost in 0 plies (or drawn if the other player can not move either), 
+ * boards that are not decided when a pass changes nothing (and all distances of the materials 
+ * with fewer pieces have been passed) are drawn.
+ * The boards of a pass are split among the threads.
+ * 
+ * Arguments of main: directory, maxPieces (default 4), number of threads (default all cores).
+ */
+public class TablebaseGenerator {
+    
+    private static final int MAX_DISTANCE = Byte.MAX_VALUE - 1;
+    
+    private int maxPieces;
+    private int numberOfThreads;
+    private byte[][][] tables;
+    // the largest distance in the materials generated so far
+    private int maxDistance;
+    
+    
+    
+    public TablebaseGenerator(int maxPieces, int numberOfThreads) {
+        if (maxPieces < 2) throw new RuntimeException("A tablebase needs at least 2 pieces: " + maxPieces);
+        this.maxPieces = maxPieces;
+        this.numberOfThreads = numberOfThreads;
+        tables = new byte[maxPieces + 1][maxPieces + 1][];
+    }
+    
+    
+    
+    /**
+     * Generates all materials and writes them to directory.
+     */
+    public void generate(Path directory) {
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, r -> {
+            Thread t = new Thread(r, "TablebaseGenerator worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Files.createDirectories(directory);
+            for (int pieces = 2; pieces <= maxPieces; pieces++) {
+                for (int a = 1; a < pieces; a++) {
+                    int b = pieces - a;
+                    generate(a, b, executor);
+                    write(directory.resolve(Tablebase.getFileName(a, b)), a, b, tables[a][b]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write the tablebase to " + directory + ".", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    
+    
+    private void generate(int a, int b, ExecutorService executor) {
+        long size = Tablebase.getSize(a, b);
+        if (size > Integer.MAX_VALUE) throw new RuntimeException("Too many boards for " + a + " against " + b + " kings.");
+        byte[] table = new byte[(int)size];
+        // moves without capture lead to boards of the same material
+        tables[a][b] = table;
+        for (int distance = 0; ; distance++) {
+            if (distance > MAX_DISTANCE) throw new RuntimeException("Distance of more than " + MAX_DISTANCE + " plies for " + a + " against " + b + " kings.");
+            AtomicBoolean changed = new AtomicBoolean();
+            int pass = distance;
+            int chunk = (int)((size + numberOfThreads - 1) / numberOfThreads);
+            List<Future<?>> running = new ArrayList<>(numberOfThreads);
+            for (int t = 0; t < numberOfThreads; t++) {
+                int from = t * chunk;
+                int to = (int)Math.min(size, (long)from + chunk);
+                running.add(executor.submit(() -> {
+                    if (solve(table, a, b, from, to, pass)) changed.set(true);
+                }));
+            }
+            for (Future<?> f : running) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while generating the tablebase.", e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Generating the tablebase failed.", e.getCause());
+                }
+            }
+            // a pass without changes ends the generation, but only after the distances of the
+            // materials reached by captures have been passed
+            if (distance > maxDistance + 1 && !changed.get()) break;
+        }
+        for (byte value : table) 
+            if (value != 0) maxDistance = Math.max(maxDistance, Tablebase.getDistance(value));
+    }
+    
+    
+    
+    /**
+     * Runs the given pass for the boards from (inclusive) to to (exclusive), returns true if a board was decided.
+     */
+    private boolean solve(byte[] table, int a, int b, int from, int to, int distance) {
+        boolean changed = false;
+        MoveBuffer moves = new MoveBuffer();
+        UndoRecord undo = new UndoRecord();
+        for (int index = from; index < to; index++) {
+            if (table[index] != 0) continue;
+            int player1Pieces = Tablebase.getPlayer1Pieces(index, a, b);
+            int player2Pieces = Tablebase.getPlayer2Pieces(index, a, b);
+            if ((player1Pieces & player2Pieces) != 0) continue;
+            int player = Tablebase.getNextPlayer(index);
+            Board board = Board.fromMasks(player1Pieces, player2Pieces, player1Pieces | player2Pieces, player);
+            if (board.getAllLegalMoves(player, moves) == 0) {
+                if (distance == 0 && board.getAllLegalMoves(board.getOtherPlayer(player), moves) > 0) {
+                    table[index] = (byte)-1;
+                    changed = true;
+                }
+                continue;
+            }
+            if (distance == 0) continue;
+            boolean allLost = true;
+            boolean won = false;
+            for (int i = 0; i < moves.size() && !won; i++) {
+                board.makeMove(moves.get(i), undo);
+                int value = getValue(board);
+                board.unmakeMove(undo);
+                // value is seen from the other player
+                if (Tablebase.isLoss(value) && Tablebase.getDistance(value) == distance - 1) won = true;
+                if (!Tablebase.isWin(value) || Tablebase.getDistance(value) > distance - 1) allLost = false;
+            }
+            if (won) table[index] = (byte)(distance + 1);
+            else if (allLost) table[index] = (byte)-(distance + 1);
+            else continue;
+            changed = true;
+        }
+        return changed;
+    }
+    
+    
+    
+    /**
+     * Returns the value of b for the player to move, a board without pieces of that player 
+     * is lost in 0 plies.
+     */
+    private int getValue(Board b) {
+        int player1Pieces = b.getPiecesMask(1);
+        int player2Pieces = b.getPiecesMask(2);
+        if (b.getPiecesMask(b.getNextPlayer()) == 0) return -1;
+        byte[] table = tables[Integer.bitCount(player1Pieces)][Integer.bitCount(player2Pieces)];
+        return table[Tablebase.getIndex(player1Pieces, player2Pieces, b.getNextPlayer())];
+    }
+    
+    
+    
+    private void write(Path file, int a, int b, byte[] table) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES);
+        header.putInt(Tablebase.MAGIC).putInt(a).putInt(b).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, 
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) channel.write(header);
+            ByteBuffer data = ByteBuffer.wrap(table);
+            while (data.hasRemaining()) channel.write(data);
+        }
+    }
+    
+    
+    
+    public static void main(String[] args) {
+        Path directory = Path.of(args.length > 0 ? args[0] : "tablebase");
+        int maxPieces = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        new TablebaseGenerator(maxPieces, threads).generate(directory);
+        System.out.println("Tablebase for up to " + maxPieces + " kings written to " + directory + 
+                " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+    
+    
+}
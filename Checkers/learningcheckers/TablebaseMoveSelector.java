@@ -0,0 +1,107 @@
+package learningcheckers;
+
+import java.util.List;
+
+/**
+ * Plays perfectly on boards that are in a Tablebase and leaves the other boards to another selector:
+ * wins as fast as possible, keeps a draw if there is no win and loses as slowly as possible.
+ * Moves in the move memory are not played.
+ */
+public class TablebaseMoveSelector extends MoveSelector {
+    
+    private Tablebase tablebase;
+    private MoveSelector selector;
+    private UndoRecord undo = new UndoRecord();
+    
+    
+    
+    public TablebaseMoveSelector(Tablebase tablebase, MoveSelector selector) {
+        super();
+        this.tablebase = tablebase;
+        this.selector = selector;
+    }
+    
+    
+    
+    @Override
+    public Move select(List<Move> legalMoves, Board b, int player) {
+        return selectPacked(legalMoves, b, player);
+    }
+    
+    
+    
+    @Override
+    public int select(MoveBuffer legalMoves, Board b, int player) {
+        if (b.getNextPlayer() == player && tablebase.probe(b) != Tablebase.UNKNOWN) {
+            Board b1 = (Board)b.clone();
+            int best = Move.NO_MOVE;
+            int bestScore = Integer.MIN_VALUE;
+            for (int i = 0; i < legalMoves.size(); i++) {
+                int m = legalMoves.get(i);
+                if (moveMemoryContains(b, m)) continue;
+                b1.makeMove(m, undo);
+                int score = b1.getPiecesMask(b1.getNextPlayer()) == 0 ? getScore(-1) : getScore(tablebase.probe(b1));
+                b1.unmakeMove(undo);
+                if (score > bestScore) {
+                    best = m;
+                    bestScore = score;
+                }
+            }
+            if (best != Move.NO_MOVE) {
+                registerMoveOnBoard(b, best);
+                selector.registerMoveOnBoard(b, best);
+                return best;
+            }
+        }
+        int m = selector.select(legalMoves, b, player);
+        if (m != Move.NO_MOVE) registerMoveOnBoard(b, m);
+        return m;
+    }
+    
+    
+    
+    /**
+     * Rates a move by the value of the resulting board for the other player: 
+     * the faster the other player loses the better, the slower the other player wins the better.
+     */
+    private static int getScore(int value) {
+        if (Tablebase.isLoss(value)) return 1000 - Tablebase.getDistance(value);
+        if (Tablebase.isWin(value)) return -1000 + Tablebase.getDistance(value);
+        return 0;
+    }
+    
+    
+    
+    @Override
+    public void resetBoardMoveMemory() {
+        super.resetBoardMoveMemory();
+        // called by the constructor of MoveSelector before the selector is set
+        if (selector != null) selector.resetBoardMoveMemory();
+    }
+    
+    
+    
+    @Override
+    public void setSeed(long seed) {
+        selector.setSeed(seed);
+    }
+    
+    
+    
+    @Override
+    public Object clone() {
+        return new TablebaseMoveSelector(tablebase, (MoveSelector)selector.clone());
+    }
+    
+    
+    
+    /**
+     * Closes the selector that plays the other boards.
+     */
+    @Override
+    public void close() {
+        selector.close();
+    }
+    
+    
+}
@@ -0,0 +1,98 @@
+package learningcheckers;
+
+import java.util.List;
+
+/**
+ * The feature rows (see FeatureExtractor) of the boards of one game, from the point of view
+ * of both players, together with the outcome of the game. Boards with a final state are left out,
+ * the outcome takes their place.
+ *
+ * Self-play threads create these so that the thread that learns from the games
+ * does not need to look at boards at all.
+ */
+public class TrainingGame {
+    
+    // the value LinearSelector.evaluate gives a board that is won
+    public static final double WIN_VALUE = 100;
+    
+    private int numberOfFeatures;
+    private int numberOfBoards;
+    // the rows of the start player, followed by the rows of the other player
+    private double[] features;
+    // seen from the start player
+    private double outcome;
+    
+    
+    
+    private TrainingGame(int numberOfFeatures, int numberOfBoards, double[] features, double outcome) {
+        this.numberOfFeatures = numberOfFeatures;
+        this.numberOfBoards = numberOfBoards;
+        this.features = features;
+        this.outcome = outcome;
+    }
+    
+    
+    
+    /**
+     * Extracts the features of the boards of a game that winner won (-1 for a draw).
+     */
+    public static TrainingGame create(List<Board> boards, int winner, FeatureExtractor extractor) {
+        int n = extractor.getNumberOfFeatures();
+        int count = 0;
+        for (Board b : boards) if (!b.boardHasFinalState()) count++;
+        double[] features = new double[2 * count * n];
+        int startPlayer = Board.getStartPlayer();
+        int row = 0;
+        for (Board b : boards) {
+            if (b.boardHasFinalState()) continue;
+            extractor.extract(b, startPlayer, features, row);
+            extractor.extract(b, b.getOtherPlayer(startPlayer), features, count + row);
+            row++;
+        }
+        double outcome = winner == -1 ? 0 : winner == startPlayer ? WIN_VALUE : -WIN_VALUE;
+        return new TrainingGame(n, count, features, outcome);
+    }
+    
+    
+    
+    public int getNumberOfFeatures() {
+        return numberOfFeatures;
+    }
+    
+    
+    
+    public int getNumberOfBoards() {
+        return numberOfBoards;
+    }
+    
+    
+    
+    /**
+     * Gives direct access to the feature rows, see getRow.
+     */
+    public double[] getFeatures() {
+        return features;
+    }
+    
+    
+    
+    /**
+     * Returns the row of getFeatures() that holds the features of the given board
+     * from the point of view of the start player (perspective 0) or the other player (perspective 1).
+     */
+    public int getRow(int perspective, int board) {
+        return perspective * numberOfBoards + board;
+    }
+    
+    
+    
+    /**
+     * Returns WIN_VALUE, -WIN_VALUE or 0 for a draw, from the point of view of the start player
+     * (perspective 0) or the other player (perspective 1).
+     */
+    public double getOutcome(int perspective) {
+        return perspective == 0 ? outcome : -outcome;
+    }
+    
+    
+}
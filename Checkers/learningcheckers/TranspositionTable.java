@@ -0,0 +1,278 @@
+package learningcheckers;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size hash table for search results, keyed by Board.getBoardHash().
+ * 
+ * Every entry consists of three longs: the data (best move, bound type, depth and age
+ * packed into one long), the bits of the score as a double and the hash of the position 
+ * xor the data xor the score bits. An entry is only accepted when all three longs fit together, 
+ * so several threads can read and write the table without locks: a torn entry, where one 
+ * thread overwrote only part of it, is simply seen as a miss.
+ * The score is kept as the full double, so an exact hit returns the same value as the 
+ * search without the table would.
+ * 
+ * The table consists of buckets of two entries. The first one keeps the deepest result
+ * of the current search, the second one is always replaced.
+ * 
+ * Scores depend on the evaluation, so a table should only be shared between searches 
+ * that use the same evaluation.
+ */
+public class TranspositionTable {
+    
+    // bound types
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+    
+    private static final int LONGS_PER_ENTRY = 3;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_ENTRY * ENTRIES_PER_BUCKET * Long.BYTES;
+    // layout of the data long
+    private static final int MOVE_SHIFT = 0;
+    private static final long MOVE_MASK = 0x1FFFF; // packed moves use 17 bits
+    private static final long NO_MOVE = MOVE_MASK; // all bits set is never a legal move
+    private static final int BOUND_SHIFT = 17;
+    private static final int DEPTH_SHIFT = 19;
+    private static final int MAX_DEPTH = 127;
+    private static final int AGE_SHIFT = 26;
+    private static final int AGE_MASK = 0xF;
+    
+    private final int megabytes;
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    
+    
+    
+    /**
+     * Creates a table that takes at most the given number of megabytes.
+     * The number of buckets is rounded down to a power of two.
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = Long.highestOneBit(Math.max(1, (long)megabytes * 1024 * 1024 / BYTES_PER_BUCKET));
+        long longs = buckets * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+        if (longs > Integer.MAX_VALUE - 8) throw new RuntimeException("Transposition table of " + megabytes + " MB is too large.");
+        this.megabytes = megabytes;
+        table = new long[(int)longs];
+        bucketMask = (int)buckets - 1;
+        age = 0;
+    }
+    
+    
+    
+    /**
+     * Marks the beginning of a new search. Entries of older searches are replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+    
+    
+    
+    public void clear() {
+        Arrays.fill(table, 0);
+        resetStatistics();
+    }
+    
+    
+    
+    /**
+     * A search result read by probe(long, Entry). Every searching thread uses its own entry.
+     */
+    public static class Entry {
+        
+        private long data;
+        private double score;
+        
+        
+        
+        /**
+         * Returns the data of the entry, use the static getters of TranspositionTable to unpack it.
+         */
+        public long getData() {
+            return data;
+        }
+        
+        
+        
+        public double getScore() {
+            return score;
+        }
+    }
+    
+    
+    
+    /**
+     * Returns the data stored for the position with the given hash, or 0 if there is none.
+     * Use the static getters to unpack the data.
+     */
+    public long probe(long hash) {
+        int index = find(hash);
+        return index < 0 ? 0 : table[index + 1];
+    }
+    
+    
+    
+    /**
+     * Reads the result stored for the position with the given hash into entry.
+     * Returns false, leaving entry unchanged, if there is none.
+     */
+    public boolean probe(long hash, Entry entry) {
+        int index = getBucketIndex(hash);
+        for (int i = 0; i < ENTRIES_PER_BUCKET; i++, index += LONGS_PER_ENTRY) {
+            long data = table[index + 1];
+            long scoreBits = table[index + 2];
+            if (data != 0 && (table[index] ^ data ^ scoreBits) == hash) {
+                hits.increment();
+                entry.data = data;
+                entry.score = Double.longBitsToDouble(scoreBits);
+                return true;
+            }
+        }
+        misses.increment();
+        return false;
+    }
+    
+    
+    
+    // returns the index of the entry of the given hash or -1
+    private int find(long hash) {
+        int index = getBucketIndex(hash);
+        for (int i = 0; i < ENTRIES_PER_BUCKET; i++, index += LONGS_PER_ENTRY) {
+            long data = table[index + 1];
+            if (data != 0 && (table[index] ^ data ^ table[index + 2]) == hash) {
+                hits.increment();
+                return index;
+            }
+        }
+        misses.increment();
+        return -1;
+    }
+    
+    
+    
+    /**
+     * Stores a search result. move may be Move.NO_MOVE.
+     */
+    public void store(long hash, int depth, int bound, double score, int move) {
+        long data = pack(depth, bound, move);
+        long scoreBits = Double.doubleToLongBits(score);
+        int index = getBucketIndex(hash);
+        long deepData = table[index + 1];
+        boolean sameHash = deepData != 0 && (table[index] ^ deepData ^ table[index + 2]) == hash;
+        int currentAge = age;
+        if (deepData == 0 || sameHash || getAge(deepData) != currentAge || depth >= getDepth(deepData)) {
+            // keep the best move of the old entry if the new result has none
+            if (move == Move.NO_MOVE && sameHash) 
+                data = (data & ~(MOVE_MASK << MOVE_SHIFT)) | (deepData & (MOVE_MASK << MOVE_SHIFT));
+        } else {
+            index += LONGS_PER_ENTRY;
+        }
+        table[index] = hash ^ data ^ scoreBits;
+        table[index + 1] = data;
+        table[index + 2] = scoreBits;
+        stores.increment();
+    }
+    
+    
+    
+    private int getBucketIndex(long hash) {
+        return ((int)(hash ^ (hash >>> 32)) & bucketMask) * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+    }
+    
+    
+    
+    private long pack(int depth, int bound, int move) {
+        long m = move == Move.NO_MOVE ? NO_MOVE : move;
+        return (m << MOVE_SHIFT) 
+                | ((long)bound << BOUND_SHIFT) 
+                | ((long)Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT)
+                | ((long)age << AGE_SHIFT);
+    }
+    
+    
+    
+    /**
+     * Returns the best move of the data or Move.NO_MOVE.
+     */
+    public static int getMove(long data) {
+        long m = (data >>> MOVE_SHIFT) & MOVE_MASK;
+        return m == NO_MOVE ? Move.NO_MOVE : (int)m;
+    }
+    
+    
+    
+    public static int getBound(long data) {
+        return (int)(data >>> BOUND_SHIFT) & 0x3;
+    }
+    
+    
+    
+    public static int getDepth(long data) {
+        return (int)(data >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+    
+    
+    
+    private static int getAge(long data) {
+        return (int)(data >>> AGE_SHIFT) & AGE_MASK;
+    }
+    
+    
+    
+    public int getMegabytes() {
+        return megabytes;
+    }
+    
+    
+    
+    /**
+     * Returns the number of entries the table can hold.
+     */
+    public int getCapacity() {
+        return table.length / LONGS_PER_ENTRY;
+    }
+    
+    
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    
+    
+    public long getStores() {
+        return stores.sum();
+    }
+    
+    
+    
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        stores.reset();
+    }
+    
+    
+    
+    public String toString() {
+        long h = getHits();
+        long m = getMisses();
+        return "Transposition table: " + getCapacity() + " entries, " + h + " hits, " + m + " misses (" + 
+                (h + m > 0 ? 100 * h / (h + m) : 0) + "% hit rate), " + getStores() + " stores";
+    }
+    
+    
+}
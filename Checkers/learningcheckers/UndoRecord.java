@@ -0,0 +1,144 @@
+package learningcheckers;
+
+/**
+ * Everything needed to take back a move that was applied with Board.makeMove.
+ * Since the board consists of a few ints only, the record simply keeps
+ * the state of the board before the move.
+ */
+public class UndoRecord {
+
+    private int player1Pieces;
+    private int player2Pieces;
+    private int kings;
+    private long boardHash;
+    private int nextPlayer;
+    private boolean featuresValid;
+    private int player1Threatened;
+    private int player2Threatened;
+    private int player1Stuck;
+    private int player2Stuck;
+    private int packedMove;
+    private int capturedPiece;
+    
+    
+    
+    void save(int player1Pieces, int player2Pieces, int kings, long boardHash, int nextPlayer) {
+        this.player1Pieces = player1Pieces;
+        this.player2Pieces = player2Pieces;
+        this.kings = kings;
+        this.boardHash = boardHash;
+        this.nextPlayer = nextPlayer;
+    }
+    
+    
+    
+    void saveFeatures(boolean featuresValid, int player1Threatened, int player2Threatened, int player1Stuck, int player2Stuck) {
+        this.featuresValid = featuresValid;
+        this.player1Threatened = player1Threatened;
+        this.player2Threatened = player2Threatened;
+        this.player1Stuck = player1Stuck;
+        this.player2Stuck = player2Stuck;
+    }
+    
+    
+    
+    void setMoveInfo(int packedMove, int capturedPiece) {
+        this.packedMove = packedMove;
+        this.capturedPiece = capturedPiece;
+    }
+    
+    
+    
+    int getPlayer1Pieces() {
+        return player1Pieces;
+    }
+    
+    
+    
+    int getPlayer2Pieces() {
+        return player2Pieces;
+    }
+    
+    
+    
+    int getKings() {
+        return kings;
+    }
+    
+    
+    
+    long getBoardHash() {
+        return boardHash;
+    }
+    
+    
+    
+    int getNextPlayer() {
+        return nextPlayer;
+    }
+    
+    
+    
+    boolean getFeaturesValid() {
+        return featuresValid;
+    }
+    
+    
+    
+    int getPlayer1Threatened() {
+        return player1Threatened;
+    }
+    
+    
+    
+    int getPlayer2Threatened() {
+        return player2Threatened;
+    }
+    
+    
+    
+    int getPlayer1Stuck() {
+        return player1Stuck;
+    }
+    
+    
+    
+    int getPlayer2Stuck() {
+        return player2Stuck;
+    }
+    
+    
+    
+    public Move getMove() {
+        return Move.unpack(packedMove);
+    }
+    
+    
+    
+    public int getPackedMove() {
+        return packedMove;
+    }
+    
+    
+    
+    /**
+     * Returns the piece that was captured by the move or 0 if nothing was captured.
+     */
+    public int getCapturedPiece() {
+        return capturedPiece;
+    }
+    
+    
+    
+    public boolean isCapture() {
+        return capturedPiece != 0;
+    }
+    
+    
+    
+    public boolean isPromotion() {
+        return Move.isPromotion(packedMove);
+    }
+    
+    
+}
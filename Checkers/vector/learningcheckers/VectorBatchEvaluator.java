@@ -0,0 +1,49 @@
+package learningcheckers;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BatchEvaluator that evaluates as many rows at once as fit into the vector lanes
+ * of the machine, the remaining rows are evaluated scalar. Multiplications and 
+ * additions are done separately (no fused multiply-add) so the values are the 
+ * same as the ones of the scalar evaluator.
+ * 
+ * Needs the incubator module, which is why this class has a source root of its own:
+ * compile it (with the classes of learningcheckers on the class path) and run 
+ * with --add-modules jdk.incubator.vector.
+ * Use BatchEvaluator.create() to get an instance, it falls back to the scalar 
+ * evaluator if the module is missing.
+ */
+public class VectorBatchEvaluator extends BatchEvaluator {
+    
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    
+    
+    
+    @Override
+    public void evaluate(FeatureBatch batch, double[] weights, double[] scores) {
+        if (weights.length != batch.getNumberOfFeatures()) 
+            throw new RuntimeException("Expected " + batch.getNumberOfFeatures() + " weights, got " + weights.length);
+        double[][] columns = batch.getColumns();
+        int upperBound = SPECIES.loopBound(batch.size());
+        for (int r = 0; r < upperBound; r += SPECIES.length()) {
+            DoubleVector score = DoubleVector.zero(SPECIES);
+            for (int f = FeatureExtractor.NORMAL_PIECES_IN_ROW; f < weights.length; f++) 
+                score = score.add(DoubleVector.fromArray(SPECIES, columns[f], r).mul(weights[f]));
+            for (int f = 0; f < FeatureExtractor.NORMAL_PIECES_IN_ROW; f++) 
+                score = score.add(DoubleVector.fromArray(SPECIES, columns[f], r).mul(weights[f]));
+            score.intoArray(scores, r);
+        }
+        evaluate(columns, weights, upperBound, batch.size(), scores);
+    }
+    
+    
+    
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+    
+    
+}